@@ -0,0 +1,84 @@
+package server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import solver.PuzzleCorpus;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives a running server with concurrent clients, each sending a corpus puzzle to {@code /solve}
+ * past the cache as soon as its previous answer arrives, and prints the latency percentiles of each status.
+ * Run with
+ * {@code mvn -P benchmark test-compile exec:exec -Dbenchmark.main=server.SolveLoadTest
+ * -Djmh.args="http://localhost:8080 64 30 25x25"}
+ * for 64 clients over 30 seconds.
+ */
+public class SolveLoadTest {
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "http://localhost:8080";
+        int clientCount = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        String puzzleName = args.length > 3 ? args[3] : "25x25";
+
+        PuzzleCorpus.Puzzle puzzle = PuzzleCorpus.get(puzzleName);
+        byte[] body = new ObjectMapper().writeValueAsBytes(Map.of(
+                "board", puzzle.cells,
+                "rowConstraints", puzzle.rowConstraints,
+                "colConstraints", puzzle.colConstraints));
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/solve?cache=false"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+
+        Map<Integer, List<Long>> latencies = new TreeMap<>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService clients = Executors.newFixedThreadPool(clientCount);
+        for (int k = 0; k < clientCount; k++) {
+            clients.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    long start = System.nanoTime();
+                    int status;
+                    try {
+                        status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    } catch (Exception e) {
+                        status = -1;
+                    }
+                    long nanos = System.nanoTime() - start;
+                    synchronized (latencies) {
+                        latencies.computeIfAbsent(status, key -> new ArrayList<>()).add(nanos);
+                    }
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+
+        System.out.printf("%d clients for %d s on %s%n", clientCount, seconds, puzzleName);
+        for (Map.Entry<Integer, List<Long>> entry: latencies.entrySet()) {
+            List<Long> nanos = entry.getValue();
+            Collections.sort(nanos);
+            System.out.printf("status %d: %d requests, %.1f/s, p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                    entry.getKey(), nanos.size(), (double) nanos.size() / seconds,
+                    percentile(nanos, 0.5), percentile(nanos, 0.9), percentile(nanos, 0.99),
+                    nanos.get(nanos.size() - 1) / 1e6);
+        }
+    }
+
+    private static double percentile(List<Long> sortedNanos, double fraction) {
+        int index = (int) Math.ceil(fraction * sortedNanos.size()) - 1;
+        return sortedNanos.get(Math.max(0, index)) / 1e6;
+    }
+}
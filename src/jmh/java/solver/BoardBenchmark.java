@@ -0,0 +1,51 @@
+package solver;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the corpus boards, and choosing the line to branch on at the root of the search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+    @Param({"5x5", "15x15", "25x25", "40x40", "60x60", "25x25-hard", "30x30-hard"})
+    public String puzzle;
+
+    @Param({"AUTO", "ENUMERATED", "LAZY"})
+    public Board.ConstraintType constraintType;
+
+    private PuzzleCorpus.Puzzle input;
+    private Board board;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.input = PuzzleCorpus.get(this.puzzle);
+        this.board = this.input.toBoard(this.constraintType);
+    }
+
+    @Benchmark
+    public Board construct() throws Exception {
+        return this.input.toBoard(this.constraintType);
+    }
+
+    @Benchmark
+    public int findBestLine() {
+        return this.board.findBestLine();
+    }
+}
@@ -0,0 +1,89 @@
+package solver;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a single line constraint, and one update/undo round trip on it.
+ * Each {@code line} is a length, then the clue with its blocks separated by dots.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstraintBenchmark {
+    @Param({"15:3.1.4.2", "25:3.1.4.2.1.5", "40:1.1.1.1.1", "60:5.3.8.2.6.1.4.2.3"})
+    public String line;
+
+    @Param({"ENUMERATED", "LAZY"})
+    public Board.ConstraintType constraintType;
+
+    private int[] clue;
+    private Line blank;
+    private Line partial;
+    private Line further;
+    private LineConstraint constraint;
+
+    @Setup
+    public void setUp() throws Exception {
+        String[] parts = this.line.split(":");
+        int length = Integer.parseInt(parts[0]);
+        this.clue = Arrays.stream(parts[1].split("\\.")).mapToInt(Integer::parseInt).toArray();
+        this.blank = new Line(length);
+
+        Line solution = new Line(length);
+        int index = 0;
+        for (int block: this.clue) {
+            for (int i = 0; i < block; i++) {
+                solution.set(index++, 2);
+            }
+            if (index < length) {
+                solution.set(index++, 1);
+            }
+        }
+        this.partial = new Line(length);
+        this.further = new Line(length);
+        for (int i = 0; i < length; i++) {
+            int cell = solution.get(i) == 0 ? 1 : solution.get(i);
+            if (i % 5 == 0) {
+                this.partial.set(i, cell);
+            }
+            if (i % 5 == 0 || i % 5 == 2) {
+                this.further.set(i, cell);
+            }
+        }
+        this.constraint = this.construct();
+    }
+
+    @Benchmark
+    public LineConstraint construct() throws Exception {
+        if (this.constraintType == Board.ConstraintType.LAZY) {
+            return new LazyConstraint(this.clue, this.blank);
+        }
+        return new Constraint(this.clue, this.blank);
+    }
+
+    @Benchmark
+    public int updateUndo() {
+        this.constraint.update(this.partial);
+        this.constraint.update(this.further);
+        int count = this.constraint.possibilityCount();
+        this.constraint.undo();
+        this.constraint.undo();
+        return count;
+    }
+}
@@ -0,0 +1,52 @@
+package solver;
+
+/**
+ * The fixed set of puzzles the benchmarks run on.
+ * Each puzzle is generated by {@link PuzzleGenerator} from a fixed seed, so every run sees the same clues.
+ * The {@code -hard} puzzles have half of their cells filled,
+ * which leaves little for propagation to deduce and makes the search backtrack heavily.
+ */
+public final class PuzzleCorpus {
+    public static class Puzzle {
+        public final boolean[][] cells;
+        public final int[][] rowConstraints;
+        public final int[][] colConstraints;
+
+        public Puzzle(boolean[][] cells, int[][] rowConstraints, int[][] colConstraints) {
+            this.cells = cells;
+            this.rowConstraints = rowConstraints;
+            this.colConstraints = colConstraints;
+        }
+
+        public Board toBoard(Board.ConstraintType constraintType) throws Exception {
+            return new Board(this.cells, this.rowConstraints, this.colConstraints, constraintType);
+        }
+    }
+
+    private PuzzleCorpus() {}
+
+    public static Puzzle get(String name) {
+        switch (name) {
+            case "5x5":
+                return generate(5, 5, 0.6, 1);
+            case "15x15":
+                return generate(15, 15, 0.6, 1);
+            case "25x25":
+                return generate(25, 25, 0.6, 1);
+            case "40x40":
+                return generate(40, 40, 0.6, 1);
+            case "60x60":
+                return generate(60, 60, 0.65, 1);
+            case "25x25-hard":
+                return generate(25, 25, 0.5, 1);
+            case "30x30-hard":
+                return generate(30, 30, 0.5, 3);
+            default:
+                throw new IllegalArgumentException("Unknown puzzle " + name);
+        }
+    }
+
+    private static Puzzle generate(int rowCount, int colCount, double density, long seed) {
+        return PuzzleGenerator.generate(rowCount, colCount, density, 0, seed);
+    }
+}
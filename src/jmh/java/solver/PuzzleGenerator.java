@@ -0,0 +1,89 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates puzzles from a seeded random solution grid, so that the same arguments always give the same puzzle.
+ * Each cell of the solution is filled with probability {@code density}, and the clues are read off the solution.
+ * A {@code crossRatio} of the empty cells of the solution are then crossed on the puzzle,
+ * as if the player had already found them.
+ */
+public final class PuzzleGenerator {
+    private PuzzleGenerator() {}
+
+    public static PuzzleCorpus.Puzzle generate(int rowCount, int colCount, double density, double crossRatio,
+                                               long seed) {
+        Random random = new Random(seed);
+        boolean[][] solution = new boolean[rowCount][colCount];
+        for (int i = 0; i < rowCount; i++) {
+            for (int j = 0; j < colCount; j++) {
+                solution[i][j] = random.nextDouble() < density;
+            }
+        }
+
+        boolean[][] cells = new boolean[rowCount][colCount];
+        if (crossRatio > 0) {
+            for (int i = 0; i < rowCount; i++) {
+                for (int j = 0; j < colCount; j++) {
+                    cells[i][j] = !solution[i][j] && random.nextDouble() < crossRatio;
+                }
+            }
+        }
+        return new PuzzleCorpus.Puzzle(cells, rowClues(solution), colClues(solution));
+    }
+
+    /**
+     * Tells whether a puzzle has exactly one solution, searching at most {@code maxNodes} candidates.
+     * @return {@code null} if the search ran out of candidates before it could tell.
+     */
+    public static Boolean isUnique(PuzzleCorpus.Puzzle puzzle, long maxNodes) throws Exception {
+        SolveResult result = puzzle.toBoard(Board.ConstraintType.AUTO).solve(null, SolveOptions.DEFAULT
+                .withSolutionLimit(2).withMaxNodes(maxNodes));
+        if (result.getOutcome() == SolveOutcome.BUDGET_EXHAUSTED) {
+            return null;
+        }
+        return result.getSolutionCount() == 1;
+    }
+
+    public static int[][] rowClues(boolean[][] solution) {
+        int[][] clues = new int[solution.length][];
+        for (int i = 0; i < solution.length; i++) {
+            clues[i] = toClue(solution[i]);
+        }
+        return clues;
+    }
+
+    public static int[][] colClues(boolean[][] solution) {
+        int[][] clues = new int[solution[0].length][];
+        for (int j = 0; j < clues.length; j++) {
+            boolean[] col = new boolean[solution.length];
+            for (int i = 0; i < solution.length; i++) {
+                col[i] = solution[i][j];
+            }
+            clues[j] = toClue(col);
+        }
+        return clues;
+    }
+
+    private static int[] toClue(boolean[] line) {
+        List<Integer> blocks = new ArrayList<>();
+        int run = 0;
+        for (boolean cell: line) {
+            if (cell) {
+                run++;
+            } else if (run > 0) {
+                blocks.add(run);
+                run = 0;
+            }
+        }
+        if (run > 0) {
+            blocks.add(run);
+        }
+        if (blocks.isEmpty()) {
+            blocks.add(0);
+        }
+        return blocks.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
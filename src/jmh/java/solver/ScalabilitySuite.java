@@ -0,0 +1,242 @@
+package solver;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Solves generated puzzles over a grid of sizes, densities and ratios of crossed cells, a few seeds each,
+ * and writes the time, heap, node count and combination totals of every solve to a CSV and a JSON file.
+ * Run with
+ * {@code mvn -P benchmark test-compile exec:exec -Dbenchmark.main=solver.ScalabilitySuite
+ * -Djmh.args="sizes=10,20,30,40 densities=0.5,0.6 crosses=0,0.3 seeds=3 baseline=scalability-1.0.csv"}
+ * where every argument is optional, see {@link #main(String[])} for all of them and their defaults.
+ * <p>
+ * Against a {@code baseline} written by an earlier run, every puzzle that now takes more nodes,
+ * or is no longer solved, is reported, and the run fails.
+ * Node counts are the same from run to run, times are only reported when they grow past {@code tolerance} times.
+ * This is why the solves are limited to {@code max-nodes} rather than to a time,
+ * a {@code timeout} in seconds can be given too, but a puzzle it stops has no stable node count.
+ */
+public class ScalabilitySuite {
+    private static final List<String> COLUMNS = List.of("rows", "cols", "density", "crossRatio", "seed", "unique",
+            "outcome", "millis", "constructionMillis", "searchMillis", "boardHeapBytes", "allocatedBytes", "nodes",
+            "backtracks", "maxDepth", "initialCombinations", "eliminatedCombinations");
+
+    /**
+     * @param args Arguments as {@code name=value}, of which
+     *             {@code sizes}, the sides of the square puzzles, by default {@code 10,20,30,40},
+     *             {@code densities}, the chances of a cell being filled, by default {@code 0.5,0.6,0.7},
+     *             {@code crosses}, the ratios of empty cells crossed from the start, by default {@code 0,0.25,0.5},
+     *             {@code seeds}, the number of puzzles of each kind, by default {@code 3},
+     *             {@code max-nodes}, the node budget of each solve, by default {@code 20000},
+     *             {@code timeout}, the seconds each solve may take, by default none,
+     *             {@code unique}, whether to check that each puzzle has one solution, by default {@code false},
+     *             {@code out}, the path of the results without their extension, by default
+     *             {@code target/scalability},
+     *             {@code baseline}, the CSV results of an earlier run to compare with, and
+     *             {@code tolerance}, how many times slower a solve may get before it is reported, by default {@code 2}.
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> arguments = new HashMap<>();
+        for (String arg: args) {
+            String[] parts = arg.split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected name=value, got " + arg);
+            }
+            arguments.put(parts[0], parts[1]);
+        }
+        int[] sizes = Arrays.stream(arguments.getOrDefault("sizes", "10,20,30,40").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        double[] densities = Arrays.stream(arguments.getOrDefault("densities", "0.5,0.6,0.7").split(","))
+                .mapToDouble(Double::parseDouble).toArray();
+        double[] crossRatios = Arrays.stream(arguments.getOrDefault("crosses", "0,0.25,0.5").split(","))
+                .mapToDouble(Double::parseDouble).toArray();
+        int seedCount = Integer.parseInt(arguments.getOrDefault("seeds", "3"));
+        long maxNodes = Long.parseLong(arguments.getOrDefault("max-nodes", "20000"));
+        Duration timeout = arguments.containsKey("timeout")
+                ? Duration.ofSeconds(Long.parseLong(arguments.get("timeout")))
+                : null;
+        boolean checkUnique = Boolean.parseBoolean(arguments.getOrDefault("unique", "false"));
+        Path out = Paths.get(arguments.getOrDefault("out", "target/scalability"));
+        String baseline = arguments.get("baseline");
+        double tolerance = Double.parseDouble(arguments.getOrDefault("tolerance", "2"));
+        arguments.keySet().removeAll(List.of("sizes", "densities", "crosses", "seeds", "max-nodes", "timeout",
+                "unique", "out", "baseline", "tolerance"));
+        if (!arguments.isEmpty()) {
+            throw new IllegalArgumentException("Unknown arguments " + arguments.keySet());
+        }
+
+        SolveOptions options = SolveOptions.DEFAULT.withMaxNodes(maxNodes).withTimeout(timeout);
+        warmUp(options);
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (int size: sizes) {
+            for (double density: densities) {
+                for (double crossRatio: crossRatios) {
+                    for (long seed = 1; seed <= seedCount; seed++) {
+                        PuzzleCorpus.Puzzle puzzle = PuzzleGenerator.generate(size, size, density, crossRatio, seed);
+                        Map<String, Object> result = new LinkedHashMap<>();
+                        result.put("rows", size);
+                        result.put("cols", size);
+                        result.put("density", density);
+                        result.put("crossRatio", crossRatio);
+                        result.put("seed", seed);
+                        result.put("unique", checkUnique ? PuzzleGenerator.isUnique(puzzle, maxNodes) : null);
+                        measure(puzzle, options, result);
+                        results.add(result);
+                        System.out.println(result);
+                    }
+                }
+            }
+        }
+
+        write(out, results);
+        if (baseline != null && !compare(readCsv(Paths.get(baseline)), results, tolerance)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Solves a few puzzles first, so that the first ones measured do not pay for the JIT compiling the solver.
+     */
+    private static void warmUp(SolveOptions options) throws Exception {
+        for (long seed = 1; seed <= 5; seed++) {
+            PuzzleGenerator.generate(20, 20, 0.6, 0, seed).toBoard(Board.ConstraintType.AUTO).solve(null, options);
+        }
+    }
+
+    /**
+     * Builds the board and solves it.
+     * The heap of the board is what it holds once built, measured across garbage collections,
+     * which for most puzzles is most of what the solve ever holds, as the combinations of the lines dominate it.
+     * Heap pools are not sampled for their peak, as G1 only updates the use of its young pools on a collection.
+     */
+    private static void measure(PuzzleCorpus.Puzzle puzzle, SolveOptions options, Map<String, Object> result)
+            throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long usedBefore = memory.getHeapMemoryUsage().getUsed();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+
+        Board board = puzzle.toBoard(Board.ConstraintType.AUTO);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        System.gc();
+        long boardHeap = memory.getHeapMemoryUsage().getUsed() - usedBefore;
+
+        allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        SolveResult solveResult = board.solve(null, options);
+        allocated += threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        SolverStats stats = solveResult.getStats();
+        long initialCombinations = 0;
+        for (int count: stats.getInitialRowPossibilityCounts()) {
+            initialCombinations += count;
+        }
+        for (int count: stats.getInitialColPossibilityCounts()) {
+            initialCombinations += count;
+        }
+        result.put("outcome", solveResult.getOutcome());
+        result.put("millis", (stats.getConstructionNanos() + stats.getSearchNanos()) / 1e6);
+        result.put("constructionMillis", stats.getConstructionNanos() / 1e6);
+        result.put("searchMillis", stats.getSearchNanos() / 1e6);
+        result.put("boardHeapBytes", Math.max(0, boardHeap));
+        result.put("allocatedBytes", allocated);
+        result.put("nodes", stats.getNodeCount());
+        result.put("backtracks", stats.getBacktrackCount());
+        result.put("maxDepth", stats.getMaxDepth());
+        result.put("initialCombinations", initialCombinations);
+        result.put("eliminatedCombinations", stats.getEliminatedCombinationCount());
+    }
+
+    private static void write(Path out, List<Map<String, Object>> results) throws IOException {
+        Path csv = out.resolveSibling(out.getFileName() + ".csv");
+        Path json = out.resolveSibling(out.getFileName() + ".json");
+        if (csv.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(csv.toAbsolutePath().getParent());
+        }
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(csv))) {
+            writer.println(String.join(",", COLUMNS));
+            for (Map<String, Object> result: results) {
+                List<String> values = new ArrayList<>();
+                for (String column: COLUMNS) {
+                    Object value = result.get(column);
+                    values.add(value == null ? "" : value.toString());
+                }
+                writer.println(String.join(",", values));
+            }
+        }
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(json.toFile(), results);
+        System.out.println("Wrote " + csv + " and " + json);
+    }
+
+    private static List<Map<String, String>> readCsv(Path path) throws IOException {
+        List<String> lines = Files.readAllLines(path);
+        String[] header = lines.get(0).split(",", -1);
+        List<Map<String, String>> rows = new ArrayList<>();
+        for (String line: lines.subList(1, lines.size())) {
+            String[] values = line.split(",", -1);
+            Map<String, String> row = new HashMap<>();
+            for (int k = 0; k < header.length; k++) {
+                row.put(header[k], values[k]);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * @return Whether no puzzle of the baseline takes more nodes now, or went from solved to not solved.
+     */
+    private static boolean compare(List<Map<String, String>> baseline, List<Map<String, Object>> results,
+                                   double tolerance) {
+        Map<String, Map<String, String>> baselineByPuzzle = new HashMap<>();
+        for (Map<String, String> row: baseline) {
+            baselineByPuzzle.put(puzzleKey(row), row);
+        }
+        int comparedCount = 0;
+        int regressionCount = 0;
+        for (Map<String, Object> result: results) {
+            Map<String, String> before = baselineByPuzzle.get(puzzleKey(result));
+            if (before == null) {
+                continue;
+            }
+            comparedCount++;
+            long nodesBefore = Long.parseLong(before.get("nodes"));
+            long nodes = (long) result.get("nodes");
+            boolean wasSolved = !before.get("outcome").equals(SolveOutcome.BUDGET_EXHAUSTED.name());
+            boolean isSolved = result.get("outcome") != SolveOutcome.BUDGET_EXHAUSTED;
+            if (nodes > nodesBefore || (wasSolved && !isSolved)) {
+                regressionCount++;
+                System.out.printf("REGRESSION %s: %s after %d nodes, was %s after %d%n", puzzleKey(result),
+                        result.get("outcome"), nodes, before.get("outcome"), nodesBefore);
+            }
+            double millisBefore = Double.parseDouble(before.get("millis"));
+            double millis = (double) result.get("millis");
+            if (millis > tolerance * millisBefore && millis > 10) {
+                System.out.printf("SLOWER %s: %.1f ms, was %.1f ms%n", puzzleKey(result), millis, millisBefore);
+            }
+        }
+        System.out.printf("Compared %d puzzles with the baseline, %d regressed%n", comparedCount, regressionCount);
+        return regressionCount == 0;
+    }
+
+    private static String puzzleKey(Map<String, ?> row) {
+        return row.get("rows") + "x" + row.get("cols") + " density " + row.get("density")
+                + " crosses " + row.get("crossRatio") + " seed " + row.get("seed");
+    }
+}
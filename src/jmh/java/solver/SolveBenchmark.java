@@ -0,0 +1,56 @@
+package solver;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Complete solves of the corpus puzzles, for each engine variant.
+ * The board is built before each invocation, so only the search is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolveBenchmark {
+    @Param({"5x5", "15x15", "25x25", "40x40", "60x60", "25x25-hard", "30x30-hard"})
+    public String puzzle;
+
+    @Param({"AUTO", "ENUMERATED", "LAZY", "PARALLEL", "CELLS"})
+    public String engine;
+
+    private Board board;
+
+    @Setup(Level.Invocation)
+    public void setUp() throws Exception {
+        Board.ConstraintType constraintType = this.engine.equals("PARALLEL") || this.engine.equals("CELLS")
+                ? Board.ConstraintType.AUTO
+                : Board.ConstraintType.valueOf(this.engine);
+        this.board = PuzzleCorpus.get(this.puzzle).toBoard(constraintType);
+    }
+
+    @Benchmark
+    public boolean[][] solve() {
+        if (this.engine.equals("PARALLEL")) {
+            return this.board.solveParallel(Runtime.getRuntime().availableProcessors());
+        }
+        if (this.engine.equals("CELLS")) {
+            return this.board.solve(null, SolveOptions.DEFAULT
+                    .withBranchingStrategy(BranchingStrategy.MOST_CONSTRAINED_CELL)).getSolution();
+        }
+        return this.board.solve();
+    }
+}
@@ -1,7 +1,108 @@
+import cli.BatchCli;
 import cli.Cli;
+import cli.ConvertCli;
+import solver.SolveOptions;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.function.Function;
 
 public class Main {
-    public static void main(String[] args) {
-        new Cli().run();
+    /**
+     * Runs the interactive solver, or with {@code --batch <file>}, solves every puzzle in the file,
+     * on {@code --threads} workers with {@code --queue} puzzles waiting for them.
+     * With {@code --timeout <seconds>}, each puzzle is given up on after that long,
+     * and with {@code --count <limit>}, the solutions of each puzzle are counted up to the limit.
+     * With {@code --convert <input> <output>}, the puzzles of a text or JSON file are written in the binary format instead.
+     * With {@code --checkpoint <file>}, the search of the interactive solver is saved to the file
+     * every {@code --checkpoint-interval <seconds>}, and {@code --resume <file>} goes on with a saved search.
+     */
+    public static void main(String[] args) throws Exception {
+        String batchPath = null;
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        int queueCapacity = 64;
+        SolveOptions options = SolveOptions.DEFAULT;
+        Path checkpointPath = null;
+        Duration checkpointInterval = Duration.ofMinutes(1);
+        Path resumePath = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--batch":
+                    batchPath = nextArg(args, i++, String::valueOf);
+                    break;
+                case "--threads":
+                    threadCount = nextArg(args, i++, Integer::parseInt);
+                    checkArg(threadCount >= 1);
+                    break;
+                case "--queue":
+                    queueCapacity = nextArg(args, i++, Integer::parseInt);
+                    checkArg(queueCapacity >= 0);
+                    break;
+                case "--timeout":
+                    long millis = Math.round(nextArg(args, i++, Double::parseDouble) * 1000);
+                    checkArg(millis > 0);
+                    options = options.withTimeout(Duration.ofMillis(millis));
+                    break;
+                case "--convert":
+                    new ConvertCli(nextArg(args, i, String::valueOf), nextArg(args, i + 1, String::valueOf)).run();
+                    return;
+                case "--count":
+                    int solutionLimit = nextArg(args, i++, Integer::parseInt);
+                    checkArg(solutionLimit >= 1);
+                    options = options.withSolutionLimit(solutionLimit);
+                    break;
+                case "--checkpoint":
+                    checkpointPath = nextArg(args, i++, Path::of);
+                    break;
+                case "--checkpoint-interval":
+                    long intervalMillis = Math.round(nextArg(args, i++, Double::parseDouble) * 1000);
+                    checkArg(intervalMillis > 0);
+                    checkpointInterval = Duration.ofMillis(intervalMillis);
+                    break;
+                case "--resume":
+                    resumePath = nextArg(args, i++, Path::of);
+                    break;
+                default:
+                    exitWithUsage();
+            }
+        }
+
+        if (resumePath != null) {
+            new Cli(options, checkpointPath, checkpointInterval).resume(resumePath);
+        } else if (batchPath == null) {
+            new Cli(options, checkpointPath, checkpointInterval).run();
+        } else {
+            new BatchCli(batchPath, threadCount, queueCapacity, options).run();
+        }
+    }
+
+    /**
+     * Parses the argument after {@code args[i]}, the value of the option there.
+     * Prints the usage and exits if it is missing, or cannot be parsed.
+     */
+    private static <T> T nextArg(String[] args, int i, Function<String, T> parse) {
+        if (i + 1 >= args.length) {
+            exitWithUsage();
+        }
+        try {
+            return parse.apply(args[i + 1]);
+        } catch (RuntimeException e) {
+            exitWithUsage();
+            return null;
+        }
+    }
+
+    /**
+     * Prints the usage and exits if the value of an option is out of range.
+     */
+    private static void checkArg(boolean isInRange) {
+        if (!isInRange) {
+            exitWithUsage();
+        }
+    }
+
+    private static void exitWithUsage() {
+        System.err.println("Usage: java -jar main.jar [--timeout seconds] [--count limit] [--checkpoint <file> [--checkpoint-interval seconds]] [--resume <file>] [--batch <file or -> [--threads n] [--queue n]] | --convert <input> <output>");
+        System.exit(1);
     }
 }
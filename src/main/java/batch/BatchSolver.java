@@ -0,0 +1,218 @@
+package batch;
+
+import solver.Board;
+import solver.SolveOptions;
+import solver.SolveOutcome;
+import solver.SolveResult;
+import solver.exceptions.InvalidConstraintException;
+
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Solves many puzzles on a fixed pool of worker threads.
+ * At most {@code queueCapacity} puzzles wait for a worker, across all batches,
+ * and reading further puzzles blocks until one is taken, so a batch of any size is read as it is solved.
+ */
+public class BatchSolver implements AutoCloseable {
+    public static class Puzzle {
+        public String id;
+        public boolean[][] board;
+        public int[][] rowConstraints;
+        public int[][] colConstraints;
+
+        public Puzzle() {
+        }
+
+        public Puzzle(String id, boolean[][] board, int[][] rowConstraints, int[][] colConstraints) {
+            this.id = id;
+            this.board = board;
+            this.rowConstraints = rowConstraints;
+            this.colConstraints = colConstraints;
+        }
+
+        /**
+         * @return What is wrong with the shape of the puzzle, or {@code null} if nothing is.
+         */
+        public String findError() {
+            if (this.board == null || this.board.length == 0 || this.board[0] == null || this.board[0].length == 0) {
+                return "Board must have at least one row and one column";
+            }
+            for (boolean[] row: this.board) {
+                if (row == null || row.length != this.board[0].length) {
+                    return "Board has inconsistent number of columns";
+                }
+            }
+            if (this.rowConstraints == null || this.rowConstraints.length != this.board.length) {
+                return "Must have the same number of row constraints as number of rows";
+            }
+            if (this.colConstraints == null || this.colConstraints.length != this.board[0].length) {
+                return "Must have the same number of col constraints as number of cols";
+            }
+            return null;
+        }
+    }
+
+    public static class Result {
+        public String id;
+        public boolean success;
+        public SolveOutcome outcome;
+        public boolean[][] solution;
+        public int solutionCount;
+        public String error;
+        public double millis;
+
+        private Result(String id, SolveOutcome outcome, boolean[][] solution, String error, long nanos) {
+            this.id = id;
+            this.success = outcome == SolveOutcome.SOLVED;
+            this.outcome = outcome;
+            this.solution = solution;
+            this.error = error;
+            this.millis = nanos / 1e6;
+        }
+    }
+
+    public static class Summary {
+        public int count;
+        public int solved;
+        public String error;
+        public double seconds;
+        public double puzzlesPerSecond;
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore permits;
+    private final SolveOptions options;
+
+    /**
+     * @param threadCount The number of puzzles solved at once.
+     * @param queueCapacity The number of puzzles that may wait for a worker.
+     * @param options The limits on solving each puzzle, and how many solutions to count.
+     * @throws IllegalArgumentException If there is not at least one thread, or the queue capacity is negative.
+     */
+    public BatchSolver(int threadCount, int queueCapacity, SolveOptions options) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1, but is " + threadCount);
+        }
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("Queue capacity must not be negative, but is " + queueCapacity);
+        }
+        this.options = options;
+        // the permits bound the queue, as a worker hands its permit back just before it takes the next puzzle
+        AtomicInteger workerCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threadCount, threadCount, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "batch-" + workerCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.permits = new Semaphore(threadCount + queueCapacity);
+    }
+
+    /**
+     * Solves every puzzle of the batch, handing the results to the consumer in the order they are solved.
+     * Both the puzzles and the consumer are only used on the calling thread.
+     */
+    public Summary solveAll(Iterator<Puzzle> puzzles, Consumer<Result> consumer) throws InterruptedException {
+        BlockingQueue<Result> results = new LinkedBlockingQueue<>();
+        Summary summary = new Summary();
+        int inFlight = 0;
+        long start = System.nanoTime();
+
+        while (puzzles.hasNext()) {
+            Puzzle puzzle = puzzles.next();
+            while (!this.permits.tryAcquire()) {
+                if (inFlight == 0) {
+                    this.permits.acquire();
+                    break;
+                }
+                this.report(results.take(), consumer, summary);
+                inFlight--;
+            }
+            try {
+                this.executor.execute(() -> {
+                    // every puzzle gets a result, or the batch would wait for it forever
+                    Result result = new Result(puzzle.id, null, null, "Solver failed", 0);
+                    try {
+                        result = this.solve(puzzle);
+                    } finally {
+                        this.permits.release();
+                        results.add(result);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // the solver is closed
+                this.permits.release();
+                results.add(new Result(puzzle.id, null, null, "Solver is closed", 0));
+            }
+            inFlight++;
+
+            Result result;
+            while ((result = results.poll()) != null) {
+                this.report(result, consumer, summary);
+                inFlight--;
+            }
+        }
+        for (; inFlight > 0; inFlight--) {
+            this.report(results.take(), consumer, summary);
+        }
+
+        summary.seconds = (System.nanoTime() - start) / 1e9;
+        summary.puzzlesPerSecond = summary.seconds == 0 ? 0 : summary.count / summary.seconds;
+        return summary;
+    }
+
+    private void report(Result result, Consumer<Result> consumer, Summary summary) {
+        summary.count++;
+        if (result.success) {
+            summary.solved++;
+        }
+        consumer.accept(result);
+    }
+
+    private Result solve(Puzzle puzzle) {
+        long start = System.nanoTime();
+        String error = puzzle.findError();
+        if (error != null) {
+            return new Result(puzzle.id, null, null, error, System.nanoTime() - start);
+        }
+        try {
+            Board board = new Board(puzzle.board, puzzle.rowConstraints, puzzle.colConstraints);
+            SolveResult result = board.solve(null, this.options);
+            Result batchResult = new Result(puzzle.id, result.getOutcome(), result.getSolution(),
+                    getError(result.getOutcome()), System.nanoTime() - start);
+            batchResult.solutionCount = result.getSolutionCount();
+            return batchResult;
+        } catch (InvalidConstraintException e) {
+            return new Result(puzzle.id, null, null, "At least one of the constraints is invalid",
+                    System.nanoTime() - start);
+        } catch (Throwable e) {
+            return new Result(puzzle.id, null, null, "Solver failed: " + e, System.nanoTime() - start);
+        }
+    }
+
+    private static String getError(SolveOutcome outcome) {
+        switch (outcome) {
+            case UNSOLVABLE:
+                return "Unsolvable puzzle";
+            case BUDGET_EXHAUSTED:
+                return "Puzzle could not be solved within the time limit";
+            case CANCELLED:
+                return "Solve was cancelled";
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        this.executor.shutdownNow();
+    }
+}
@@ -0,0 +1,218 @@
+package batch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the puzzles of a file written by {@link PuzzleFileWriter}, one at a time as the batch asks for them.
+ * The file is mapped into memory a window at a time, so a corpus of any size is read without copying it onto the heap,
+ * and each puzzle is decoded straight from the mapped bytes into the arrays that a {@link solver.Board} is built from.
+ * Puzzles without an id are given their position in the file, counting from 1.
+ * A file that turns out to be corrupt throws an {@link UncheckedIOException} from {@link #next()}.
+ */
+public class MappedPuzzleReader implements Iterator<BatchSolver.Puzzle>, Closeable {
+    private static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+    private static final int MAX_VARINT_LENGTH = 5;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+    private MappedByteBuffer window = null;
+    private long windowStart = 0;
+    private long position = PuzzleFileWriter.HEADER_LENGTH;
+    private int count = 0;
+
+    public MappedPuzzleReader(Path path) throws IOException {
+        this(path, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize The number of bytes mapped at once, unless a single puzzle takes more.
+     */
+    MappedPuzzleReader(Path path, int windowSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = this.channel.size();
+        this.windowSize = windowSize;
+        if (this.size < PuzzleFileWriter.HEADER_LENGTH) {
+            this.channel.close();
+            throw new IOException("Not a puzzle file: " + path);
+        }
+        this.map(0, PuzzleFileWriter.HEADER_LENGTH);
+        byte[] header = new byte[PuzzleFileWriter.HEADER_LENGTH];
+        this.window.get(header);
+        if (!Arrays.equals(header, 0, PuzzleFileWriter.MAGIC.length, PuzzleFileWriter.MAGIC, 0, PuzzleFileWriter.MAGIC.length)
+                || header[PuzzleFileWriter.MAGIC.length] != PuzzleFileWriter.VERSION) {
+            this.channel.close();
+            throw new IOException("Not a puzzle file of version " + PuzzleFileWriter.VERSION + ": " + path);
+        }
+    }
+
+    /**
+     * Checks whether the file starts like one written by {@link PuzzleFileWriter}.
+     */
+    public static boolean isPuzzleFile(Path path) throws IOException {
+        byte[] magic;
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            magic = inputStream.readNBytes(PuzzleFileWriter.MAGIC.length);
+        }
+        return Arrays.equals(magic, PuzzleFileWriter.MAGIC);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return this.position < this.size;
+    }
+
+    @Override
+    public BatchSolver.Puzzle next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            this.map(this.position, Math.min(this.size, this.position + MAX_VARINT_LENGTH));
+            this.window.position((int) (this.position - this.windowStart));
+            int length = this.readVarint(this.window);
+            long start = this.windowStart + this.window.position();
+            if (start + length > this.size) {
+                throw this.corrupt();
+            }
+            this.map(start, start + length);
+            ByteBuffer record = this.window;
+            int offset = (int) (start - this.windowStart);
+            record.limit(offset + length).position(offset);
+
+            BatchSolver.Puzzle puzzle;
+            try {
+                puzzle = this.decode(record);
+                if (record.hasRemaining()) {
+                    throw this.corrupt();
+                }
+            } finally {
+                // the window is shared by every record in it, so a bad one must not leave it cut short
+                record.limit(record.capacity());
+            }
+            this.position = start + length;
+            this.count++;
+            if (puzzle.id.isEmpty()) {
+                puzzle.id = String.valueOf(this.count);
+            }
+            return puzzle;
+        } catch (BufferUnderflowException e) {
+            throw new UncheckedIOException(this.corrupt());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private BatchSolver.Puzzle decode(ByteBuffer record) throws IOException {
+        byte[] id = new byte[this.readCount(record, 1)];
+        record.get(id);
+        int rowCount = this.readCount(record, 1);
+        int colCount = this.readCount(record, 1);
+        int flags = record.get();
+        // every constraint takes at least a byte, which bounds the board before it is allocated
+        if (rowCount == 0 || colCount == 0 || rowCount + colCount > record.remaining()) {
+            throw this.corrupt();
+        }
+        int[][] rowConstraints = new int[rowCount][];
+        for (int i = 0; i < rowCount; i++) {
+            rowConstraints[i] = this.readConstraint(record);
+        }
+        int[][] colConstraints = new int[colCount][];
+        for (int j = 0; j < colCount; j++) {
+            colConstraints[j] = this.readConstraint(record);
+        }
+
+        boolean[][] board = new boolean[rowCount][colCount];
+        if ((flags & PuzzleFileWriter.HAS_CROSSES) != 0) {
+            if (((long) rowCount * colCount + 7) / 8 != record.remaining()) {
+                throw this.corrupt();
+            }
+            int bits = 0;
+            int bitCount = 0;
+            for (boolean[] row: board) {
+                for (int j = 0; j < colCount; j++) {
+                    if (bitCount == 0) {
+                        bits = record.get();
+                        bitCount = 8;
+                    }
+                    row[j] = (bits & 1) != 0;
+                    bits >>>= 1;
+                    bitCount--;
+                }
+            }
+        }
+        return new BatchSolver.Puzzle(new String(id, StandardCharsets.UTF_8), board, rowConstraints, colConstraints);
+    }
+
+    private int[] readConstraint(ByteBuffer record) throws IOException {
+        int[] constraint = new int[this.readCount(record, 1)];
+        for (int k = 0; k < constraint.length; k++) {
+            constraint[k] = this.readVarint(record);
+        }
+        return constraint;
+    }
+
+    /**
+     * Reads the number of items that follow, each taking at least {@code itemLength} bytes.
+     */
+    private int readCount(ByteBuffer record, int itemLength) throws IOException {
+        int count = this.readVarint(record);
+        if ((long) count * itemLength > record.remaining()) {
+            throw this.corrupt();
+        }
+        return count;
+    }
+
+    private int readVarint(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 7 * MAX_VARINT_LENGTH; shift += 7) {
+            int b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw this.corrupt();
+                }
+                return value;
+            }
+        }
+        throw this.corrupt();
+    }
+
+    /**
+     * Maps a window that covers the given range of the file, unless the current one already does.
+     */
+    private void map(long start, long end) throws IOException {
+        if (this.window != null && start >= this.windowStart && end <= this.windowStart + this.window.capacity()) {
+            return;
+        }
+        long length = Math.min(this.size - start, Math.max(this.windowSize, end - start));
+        if (length > Integer.MAX_VALUE) {
+            throw this.corrupt();
+        }
+        this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        this.windowStart = start;
+    }
+
+    private IOException corrupt() {
+        return new IOException(String.format("Corrupt puzzle %d at byte %d", this.count + 1, this.position));
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
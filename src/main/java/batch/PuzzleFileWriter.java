@@ -0,0 +1,124 @@
+package batch;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes puzzles in the binary format read by {@link MappedPuzzleReader}.
+ * The file starts with the magic bytes {@code NONO} and a version byte, followed by one record per puzzle:
+ * the length of the rest of the record, the id in UTF-8 after its length, the number of rows and of columns,
+ * a flags byte, then every row constraint and every column constraint as its count of numbers followed by the numbers,
+ * and last, if the flags have {@link #HAS_CROSSES}, the crossed cells as a bitmap, row by row, lowest bit first.
+ * Every number is an unsigned varint, seven bits to a byte, lowest bits first.
+ */
+public class PuzzleFileWriter implements AutoCloseable {
+    static final byte[] MAGIC = {'N', 'O', 'N', 'O'};
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = MAGIC.length + 1;
+    static final int HAS_CROSSES = 1;
+
+    private final OutputStream outputStream;
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private long byteCount = HEADER_LENGTH;
+
+    public PuzzleFileWriter(OutputStream outputStream) throws IOException {
+        this.outputStream = new BufferedOutputStream(outputStream, 1 << 16);
+        this.outputStream.write(MAGIC);
+        this.outputStream.write(VERSION);
+    }
+
+    /**
+     * @throws IllegalArgumentException If the puzzle is not well formed, or a constraint has a negative number.
+     */
+    public void write(BatchSolver.Puzzle puzzle) throws IOException {
+        String error = puzzle.findError();
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+        int rowCount = puzzle.board.length;
+        int colCount = puzzle.board[0].length;
+        boolean hasCrosses = false;
+        for (boolean[] row: puzzle.board) {
+            for (boolean cell: row) {
+                hasCrosses |= cell;
+            }
+        }
+
+        this.record.reset();
+        byte[] id = puzzle.id == null ? new byte[0] : puzzle.id.getBytes(StandardCharsets.UTF_8);
+        writeVarint(this.record, id.length);
+        this.record.write(id);
+        writeVarint(this.record, rowCount);
+        writeVarint(this.record, colCount);
+        this.record.write(hasCrosses ? HAS_CROSSES : 0);
+        writeConstraints(this.record, puzzle.rowConstraints);
+        writeConstraints(this.record, puzzle.colConstraints);
+        if (hasCrosses) {
+            int bits = 0;
+            int bitCount = 0;
+            for (boolean[] row: puzzle.board) {
+                for (boolean cell: row) {
+                    if (cell) {
+                        bits |= 1 << bitCount;
+                    }
+                    if (++bitCount == 8) {
+                        this.record.write(bits);
+                        bits = 0;
+                        bitCount = 0;
+                    }
+                }
+            }
+            if (bitCount > 0) {
+                this.record.write(bits);
+            }
+        }
+
+        this.byteCount += writeVarint(this.outputStream, this.record.size()) + this.record.size();
+        this.record.writeTo(this.outputStream);
+    }
+
+    /**
+     * @return The number of bytes written so far, including the header.
+     */
+    public long getByteCount() {
+        return this.byteCount;
+    }
+
+    private static void writeConstraints(OutputStream outputStream, int[][] constraints) throws IOException {
+        for (int[] constraint: constraints) {
+            if (constraint == null) {
+                writeVarint(outputStream, 0);
+                continue;
+            }
+            writeVarint(outputStream, constraint.length);
+            for (int number: constraint) {
+                if (number < 0) {
+                    throw new IllegalArgumentException("Constraints must not have negative numbers");
+                }
+                writeVarint(outputStream, number);
+            }
+        }
+    }
+
+    /**
+     * @return The number of bytes written.
+     */
+    private static int writeVarint(OutputStream outputStream, int value) throws IOException {
+        int byteCount = 1;
+        while ((value & ~0x7f) != 0) {
+            outputStream.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+            byteCount++;
+        }
+        outputStream.write(value);
+        return byteCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.outputStream.close();
+    }
+}
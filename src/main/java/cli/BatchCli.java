@@ -0,0 +1,195 @@
+package cli;
+
+import batch.BatchSolver;
+import batch.MappedPuzzleReader;
+import solver.SolveOptions;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Solves a file of puzzles without prompting, one puzzle per line, in the format
+ * {@code id | row constraints | col constraints | crosses}, where constraints are separated by commas,
+ * the numbers of a constraint by spaces, and the optional crosses are one binary string per row, separated by commas.
+ * For example, {@code daily-1 | 2, 1 | 1, 2, 0} is a puzzle with two rows and three columns.
+ * A file written by {@link batch.PuzzleFileWriter} is recognized and read in its binary format instead.
+ * Each result is printed as a line once it is solved, with the id, the time taken, and the solved rows,
+ * along with the number of solutions when counting them.
+ */
+public class BatchCli {
+    static class PuzzleIterator implements Iterator<BatchSolver.Puzzle> {
+        private final BufferedReader reader;
+        private BatchSolver.Puzzle nextPuzzle = null;
+        private int lineNumber = 0;
+
+        PuzzleIterator(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (this.nextPuzzle == null) {
+                String line;
+                try {
+                    line = this.reader.readLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (line == null) {
+                    return false;
+                }
+                this.lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                this.nextPuzzle = parsePuzzle(line);
+                if (this.nextPuzzle == null) {
+                    System.err.printf("Line %d: invalid puzzle, skipped%n", this.lineNumber);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public BatchSolver.Puzzle next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            BatchSolver.Puzzle puzzle = this.nextPuzzle;
+            this.nextPuzzle = null;
+            return puzzle;
+        }
+    }
+
+    private final String path;
+    private final int threadCount;
+    private final int queueCapacity;
+    private final SolveOptions options;
+
+    /**
+     * @param path The file to read the puzzles from, or {@code -} for the standard input.
+     */
+    public BatchCli(String path, int threadCount, int queueCapacity, SolveOptions options) {
+        this.path = path;
+        this.threadCount = threadCount;
+        this.queueCapacity = queueCapacity;
+        this.options = options;
+    }
+
+    public void run() throws IOException, InterruptedException {
+        Closeable source;
+        Iterator<BatchSolver.Puzzle> puzzles;
+        if (!this.path.equals("-") && MappedPuzzleReader.isPuzzleFile(Paths.get(this.path))) {
+            MappedPuzzleReader reader = new MappedPuzzleReader(Paths.get(this.path));
+            source = reader;
+            puzzles = reader;
+        } else {
+            BufferedReader reader = this.path.equals("-")
+                    ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                    : Files.newBufferedReader(Paths.get(this.path));
+            source = reader;
+            puzzles = new PuzzleIterator(reader);
+        }
+        BatchSolver.Summary summary;
+        try (source; BatchSolver batchSolver = new BatchSolver(this.threadCount, this.queueCapacity, this.options)) {
+            summary = batchSolver.solveAll(puzzles, this::printResult);
+        }
+        System.out.flush();
+        System.err.printf("Solved %d of %d puzzles in %.3f s, %.1f puzzles/s%n",
+                summary.solved, summary.count, summary.seconds, summary.puzzlesPerSecond);
+    }
+
+    private void printResult(BatchSolver.Result result) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(result.id).append('\t').append(String.format("%.3f ms", result.millis)).append('\t');
+        if (result.success && this.options.getSolutionLimit() > 1) {
+            builder.append(Cli.describeSolutionCount(result.solutionCount, this.options.getSolutionLimit()));
+            builder.append('\t');
+        }
+        if (result.success) {
+            for (int i = 0; i < result.solution.length; i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                for (boolean cell: result.solution[i]) {
+                    builder.append(cell ? 'X' : '.');
+                }
+            }
+        } else {
+            builder.append(result.error);
+        }
+        System.out.println(builder);
+    }
+
+    private static BatchSolver.Puzzle parsePuzzle(String line) {
+        String[] fields = line.split("\\|", -1);
+        if (fields.length != 3 && fields.length != 4) {
+            return null;
+        }
+        int[][] rowConstraints = parseConstraints(fields[1]);
+        int[][] colConstraints = parseConstraints(fields[2]);
+        if (rowConstraints == null || colConstraints == null) {
+            return null;
+        }
+        boolean[][] board = fields.length == 4 && !fields[3].isBlank()
+                ? parseBoard(fields[3], colConstraints.length)
+                : new boolean[rowConstraints.length][colConstraints.length];
+        if (board == null) {
+            return null;
+        }
+        return new BatchSolver.Puzzle(fields[0].trim(), board, rowConstraints, colConstraints);
+    }
+
+    private static int[][] parseConstraints(String field) {
+        String[] parts = field.split(",", -1);
+        int[][] constraints = new int[parts.length][];
+        for (int i = 0; i < parts.length; i++) {
+            String part = parts[i].trim();
+            if (part.isEmpty()) {
+                constraints[i] = new int[0];
+                continue;
+            }
+            String[] numbers = part.split("\\s+");
+            constraints[i] = new int[numbers.length];
+            for (int k = 0; k < numbers.length; k++) {
+                try {
+                    constraints[i][k] = Integer.parseInt(numbers[k]);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        return constraints;
+    }
+
+    private static boolean[][] parseBoard(String field, int colCount) {
+        String[] rows = field.split(",", -1);
+        boolean[][] board = new boolean[rows.length][colCount];
+        for (int i = 0; i < rows.length; i++) {
+            String row = rows[i].trim();
+            if (row.length() != colCount) {
+                return null;
+            }
+            for (int j = 0; j < colCount; j++) {
+                switch (row.charAt(j)) {
+                    case '0':
+                        break;
+                    case '1':
+                        board[i][j] = true;
+                        break;
+                    default:
+                        return null;
+                }
+            }
+        }
+        return board;
+    }
+}
@@ -1,14 +1,39 @@
 package cli;
 
 import solver.Board;
+import solver.Checkpoint;
+import solver.Search;
+import solver.SolveOptions;
+import solver.SolveOutcome;
+import solver.SolveResult;
 import solver.exceptions.InvalidConstraintException;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Scanner;
 
 public class Cli {
     private final Scanner scanner = new Scanner(System.in);
+    private final SolveOptions options;
+    private final Path checkpointPath;
+    private final Duration checkpointInterval;
 
-    public void run() {
+    public Cli(SolveOptions options) {
+        this(options, null, null);
+    }
+
+    /**
+     * @param checkpointPath Where to save the search every {@code checkpointInterval} while it runs,
+     *                       to {@link #resume(Path)} it after a restart, or {@code null} not to save it.
+     */
+    public Cli(SolveOptions options, Path checkpointPath, Duration checkpointInterval) {
+        this.options = options;
+        this.checkpointPath = checkpointPath;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    public void run() throws IOException {
         int rowCount = this.getNumber("Number of rows: ");
         int colCount = this.getNumber("Number of columns: ");
         boolean[][] board = new boolean[rowCount][];
@@ -35,8 +60,58 @@ public class Cli {
             this.printSolution(null);
             return;
         }
-        boolean[][] solution = solver.solve();
-        this.printSolution(solution);
+        Search search = solver.startSearch(null, this.options);
+        SolveResult result = this.finish(search, board, rowConstraints, colConstraints, this.checkpointPath);
+        this.printResult(result, this.options.getSolutionLimit());
+    }
+
+    /**
+     * Goes on with the search saved in a checkpoint, saving it again to the same file,
+     * or to the checkpoint path if there is one.
+     */
+    public void resume(Path path) throws IOException {
+        Checkpoint checkpoint = Checkpoint.read(path);
+        System.out.printf("Resuming after %d nodes%n", checkpoint.getSnapshot().getNodeCount());
+        Search search;
+        try {
+            search = checkpoint.resume(null, this.options);
+        } catch (InvalidConstraintException e) {
+            this.printSolution(null);
+            return;
+        }
+        SolveResult result = this.finish(search, checkpoint.getCells(), checkpoint.getRowConstraints(),
+                checkpoint.getColConstraints(), this.checkpointPath == null ? path : this.checkpointPath);
+        this.printResult(result, checkpoint.getSnapshot().getSolutionLimit());
+    }
+
+    /**
+     * Runs the search to the end, saving it along with its puzzle along the way if there is somewhere to.
+     */
+    private SolveResult finish(Search search, boolean[][] board, int[][] rowConstraints, int[][] colConstraints,
+                               Path path) throws IOException {
+        if (path == null) {
+            search.run();
+            return search.getResult();
+        }
+        return Checkpoint.runSearch(search, board, rowConstraints, colConstraints, path, this.checkpointInterval);
+    }
+
+    private void printResult(SolveResult result, int solutionLimit) {
+        if (result.getOutcome() == SolveOutcome.BUDGET_EXHAUSTED) {
+            System.out.println("No answer found within the time limit");
+            return;
+        }
+        if (solutionLimit > 1) {
+            System.out.println(describeSolutionCount(result.getSolutionCount(), solutionLimit));
+        }
+        this.printSolution(result.getSolution());
+    }
+
+    static String describeSolutionCount(int solutionCount, int solutionLimit) {
+        if (solutionCount == 1) {
+            return "Unique solution";
+        }
+        return String.format(solutionCount >= solutionLimit ? "At least %d solutions" : "%d solutions", solutionCount);
     }
 
     private int getNumber(String prompt) {
@@ -0,0 +1,89 @@
+package cli;
+
+import batch.BatchSolver;
+import batch.PuzzleFileWriter;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+
+/**
+ * Converts a file of puzzles into the binary format of {@link PuzzleFileWriter}, for {@link BatchCli} to read faster.
+ * The input is either in the text format of {@link BatchCli},
+ * or JSON puzzles as the server takes them, one per line or in an array, with an optional {@code id}.
+ * Puzzles that are not well formed are reported and skipped.
+ * Only JSON input needs Jackson on the class path, text input converts from {@code main.jar} as it is.
+ */
+public class ConvertCli {
+    private final String inputPath;
+    private final String outputPath;
+
+    /**
+     * @param inputPath The file to read the puzzles from, or {@code -} for the standard input.
+     */
+    public ConvertCli(String inputPath, String outputPath) {
+        this.inputPath = inputPath;
+        this.outputPath = outputPath;
+    }
+
+    public void run() throws IOException {
+        BufferedReader reader = this.inputPath.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(this.inputPath));
+        int count = 0;
+        int skipped = 0;
+        long byteCount;
+        try (reader; PuzzleFileWriter writer = new PuzzleFileWriter(Files.newOutputStream(Paths.get(this.outputPath)))) {
+            Iterator<BatchSolver.Puzzle> puzzles = isJson(reader)
+                    ? readJson(reader)
+                    : new BatchCli.PuzzleIterator(reader);
+            while (puzzles.hasNext()) {
+                BatchSolver.Puzzle puzzle = puzzles.next();
+                count++;
+                try {
+                    writer.write(puzzle);
+                } catch (IllegalArgumentException e) {
+                    System.err.printf("Puzzle %d: %s, skipped%n", count, e.getMessage());
+                    skipped++;
+                }
+            }
+            if (puzzles instanceof Closeable) {
+                ((Closeable) puzzles).close();
+            }
+            byteCount = writer.getByteCount();
+        }
+        System.err.printf("Converted %d of %d puzzles into %s, %d bytes%n",
+                count - skipped, count, this.outputPath, byteCount);
+    }
+
+    /**
+     * @throws IOException If Jackson is not on the class path, as when running from {@code main.jar}.
+     */
+    private static Iterator<BatchSolver.Puzzle> readJson(Reader reader) throws IOException {
+        try {
+            return JsonPuzzles.read(reader);
+        } catch (NoClassDefFoundError e) {
+            throw new IOException("Converting JSON puzzles needs Jackson, run from the server jar to convert them", e);
+        }
+    }
+
+    /**
+     * Peeks at the first character that is not whitespace, leaving the reader where it was.
+     */
+    private static boolean isJson(Reader reader) throws IOException {
+        while (true) {
+            reader.mark(1);
+            int c = reader.read();
+            if (c == -1 || !Character.isWhitespace(c)) {
+                reader.reset();
+                return c == '{' || c == '[';
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package cli;
+
+import batch.BatchSolver;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+
+/**
+ * Reads JSON puzzles for {@link ConvertCli}, kept apart from it so that Jackson is only loaded for JSON input,
+ * as {@code main.jar} does not bundle it.
+ */
+class JsonPuzzles {
+    private JsonPuzzles() {}
+
+    /**
+     * @return The puzzles, one per line or in an array, as an iterator that is also {@link java.io.Closeable}.
+     */
+    static Iterator<BatchSolver.Puzzle> read(Reader reader) throws IOException {
+        return new ObjectMapper().readerFor(BatchSolver.Puzzle.class).readValues(reader);
+    }
+}
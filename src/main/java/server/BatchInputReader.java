@@ -0,0 +1,61 @@
+package server;
+
+import batch.BatchSolver;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads puzzles from newline-delimited JSON, one at a time as the batch asks for them.
+ * Puzzles without an id are given their position in the input, counting from 1.
+ * Input that cannot be read ends the batch, and is reported through {@link #getError()}.
+ */
+class BatchInputReader implements Iterator<BatchSolver.Puzzle> {
+    private final MappingIterator<BatchSolver.Puzzle> iterator;
+    private int count = 0;
+    private String error = null;
+
+    BatchInputReader(ObjectMapper objectMapper, InputStream inputStream) throws IOException {
+        this.iterator = objectMapper.readerFor(BatchSolver.Puzzle.class).readValues(inputStream);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.error != null) {
+            return false;
+        }
+        try {
+            return this.iterator.hasNextValue();
+        } catch (IOException e) {
+            this.error = String.format("Could not read puzzle %d: %s", this.count + 1, e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public BatchSolver.Puzzle next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        BatchSolver.Puzzle puzzle;
+        try {
+            puzzle = this.iterator.nextValue();
+        } catch (IOException e) {
+            this.error = String.format("Could not read puzzle %d: %s", this.count + 1, e.getMessage());
+            puzzle = new BatchSolver.Puzzle();
+        }
+        this.count++;
+        if (puzzle.id == null) {
+            puzzle.id = String.valueOf(this.count);
+        }
+        return puzzle;
+    }
+
+    String getError() {
+        return this.error;
+    }
+}
@@ -0,0 +1,168 @@
+package server;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A puzzle brought into a canonical orientation, so that its transposed and mirrored variants share one key.
+ * Each of the eight orientations is encoded, and the smallest encoding is kept,
+ * along with the orientation that produced it, to map solutions back and forth.
+ */
+public class CanonicalPuzzle {
+    private static final int ORIENTATION_COUNT = 8;
+
+    private final String key;
+    private final int orientation;
+    private final int rowCount;
+    private final int colCount;
+
+    private CanonicalPuzzle(String key, int orientation, int rowCount, int colCount) {
+        this.key = key;
+        this.orientation = orientation;
+        this.rowCount = rowCount;
+        this.colCount = colCount;
+    }
+
+    public static CanonicalPuzzle of(boolean[][] board, int[][] rowConstraints, int[][] colConstraints) {
+        String best = null;
+        int bestOrientation = 0;
+        for (int orientation = 0; orientation < ORIENTATION_COUNT; orientation++) {
+            String encoding = encode(board, rowConstraints, colConstraints, orientation);
+            if (best == null || encoding.compareTo(best) < 0) {
+                best = encoding;
+                bestOrientation = orientation;
+            }
+        }
+        return new CanonicalPuzzle(hash(best), bestOrientation, board.length, board[0].length);
+    }
+
+    /**
+     * The SHA-256 hash of the canonical encoding, in hexadecimal.
+     */
+    public String getKey() {
+        return this.key;
+    }
+
+    /**
+     * Turns a solution of this puzzle, as given, into a solution of the canonical puzzle.
+     */
+    public boolean[][] toCanonical(boolean[][] solution) {
+        boolean isTransposed = isTransposed(this.orientation);
+        boolean[][] canonical = isTransposed
+                ? new boolean[this.colCount][this.rowCount]
+                : new boolean[this.rowCount][this.colCount];
+        for (int i = 0; i < this.rowCount; i++) {
+            for (int j = 0; j < this.colCount; j++) {
+                int row = this.mapRow(i, j);
+                int col = this.mapCol(i, j);
+                canonical[row][col] = solution[i][j];
+            }
+        }
+        return canonical;
+    }
+
+    /**
+     * Turns a solution of the canonical puzzle into a solution of this puzzle, as given.
+     */
+    public boolean[][] fromCanonical(boolean[][] canonical) {
+        boolean[][] solution = new boolean[this.rowCount][this.colCount];
+        for (int i = 0; i < this.rowCount; i++) {
+            for (int j = 0; j < this.colCount; j++) {
+                solution[i][j] = canonical[this.mapRow(i, j)][this.mapCol(i, j)];
+            }
+        }
+        return solution;
+    }
+
+    private int mapRow(int i, int j) {
+        return isTransposed(this.orientation)
+                ? flip(j, this.colCount, isColFlipped(this.orientation))
+                : flip(i, this.rowCount, isRowFlipped(this.orientation));
+    }
+
+    private int mapCol(int i, int j) {
+        return isTransposed(this.orientation)
+                ? flip(i, this.rowCount, isRowFlipped(this.orientation))
+                : flip(j, this.colCount, isColFlipped(this.orientation));
+    }
+
+    /**
+     * Encodes the puzzle as seen after reversing the order of the rows and/or columns,
+     * then possibly transposing it.
+     */
+    private static String encode(boolean[][] board, int[][] rowConstraints, int[][] colConstraints, int orientation) {
+        boolean isRowFlipped = isRowFlipped(orientation);
+        boolean isColFlipped = isColFlipped(orientation);
+        int rowCount = board.length;
+        int colCount = board[0].length;
+
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < rowCount; i++) {
+            appendClue(rows, rowConstraints[flip(i, rowCount, isRowFlipped)], isColFlipped);
+        }
+        StringBuilder cols = new StringBuilder();
+        for (int j = 0; j < colCount; j++) {
+            appendClue(cols, colConstraints[flip(j, colCount, isColFlipped)], isRowFlipped);
+        }
+
+        StringBuilder encoding = new StringBuilder();
+        if (isTransposed(orientation)) {
+            encoding.append(colCount).append('x').append(rowCount).append('|').append(cols).append('|').append(rows);
+            encoding.append('|');
+            for (int j = 0; j < colCount; j++) {
+                for (int i = 0; i < rowCount; i++) {
+                    encoding.append(board[flip(i, rowCount, isRowFlipped)][flip(j, colCount, isColFlipped)] ? '1' : '0');
+                }
+            }
+        } else {
+            encoding.append(rowCount).append('x').append(colCount).append('|').append(rows).append('|').append(cols);
+            encoding.append('|');
+            for (int i = 0; i < rowCount; i++) {
+                for (int j = 0; j < colCount; j++) {
+                    encoding.append(board[flip(i, rowCount, isRowFlipped)][flip(j, colCount, isColFlipped)] ? '1' : '0');
+                }
+            }
+        }
+        return encoding.toString();
+    }
+
+    private static void appendClue(StringBuilder builder, int[] clue, boolean isReversed) {
+        for (int k = 0; k < clue.length; k++) {
+            int number = clue[isReversed ? clue.length - 1 - k : k];
+            if (number != 0) {
+                builder.append(number).append(' ');
+            }
+        }
+        builder.append(';');
+    }
+
+    private static String hash(String encoding) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(encoding.getBytes(StandardCharsets.US_ASCII));
+            StringBuilder builder = new StringBuilder();
+            for (byte b: digest) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int flip(int index, int count, boolean isFlipped) {
+        return isFlipped ? count - 1 - index : index;
+    }
+
+    private static boolean isRowFlipped(int orientation) {
+        return (orientation & 1) != 0;
+    }
+
+    private static boolean isColFlipped(int orientation) {
+        return (orientation & 2) != 0;
+    }
+
+    private static boolean isTransposed(int orientation) {
+        return (orientation & 4) != 0;
+    }
+}
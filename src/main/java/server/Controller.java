@@ -1,21 +1,51 @@
 package server;
 
+import batch.BatchSolver;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import solver.Board;
+import solver.DeltaStep;
+import solver.SolveOptions;
+import solver.SolveOutcome;
+import solver.SolveResult;
+import solver.SolverStats;
 import solver.Step;
 import solver.exceptions.InvalidConstraintException;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 public class Controller {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final String BUDGET_EXHAUSTED_ERROR = "Puzzle could not be solved within the time limit";
+    private static final String TOO_MANY_REQUESTS_ERROR = "Too many puzzles are waiting to be solved, try again later";
+
     private static class PuzzleInput {
         public boolean[][] board;
         public int[][] rowConstraints;
@@ -26,6 +56,8 @@ public class Controller {
         public boolean success;
         public boolean[][] solution;
         public List<Step> steps;
+        public Integer solutionCount;
+        public SolverStats stats;
         public String error;
 
         public PuzzleOutput(boolean[][] solution, List<Step> steps) {
@@ -52,19 +84,272 @@ public class Controller {
         }
     }
 
+    private final ObjectMapper objectMapper;
+    private final SolutionCache solutionCache;
+    private final SolutionStore solutionStore;
+    private final BatchSolver batchSolver;
+    private final SolveMetrics solveMetrics;
+    private final SolveExecutor solveExecutor;
+    private final JobManager jobManager;
+    private final SolveOptions solveOptions;
+
+    public Controller(ObjectMapper objectMapper, SolutionCache solutionCache, SolutionStore solutionStore,
+                      BatchSolver batchSolver, SolveMetrics solveMetrics, SolveExecutor solveExecutor,
+                      JobManager jobManager,
+                      @Value("${nonogram.solve.timeout:30s}") Duration timeout,
+                      @Value("${nonogram.solve.max-nodes:0}") long maxNodes) {
+        this.objectMapper = objectMapper;
+        this.solutionCache = solutionCache;
+        this.solutionStore = solutionStore;
+        this.batchSolver = batchSolver;
+        this.solveMetrics = solveMetrics;
+        this.solveExecutor = solveExecutor;
+        this.jobManager = jobManager;
+        this.solveOptions = SolveOptions.DEFAULT.withTimeout(timeout).withMaxNodes(maxNodes);
+    }
+
+    /**
+     * Solves a puzzle, with every step the solver took.
+     * With {@code delta}, the steps only carry the lines changed since the previous step,
+     * with the whole board every {@code keyframeInterval} steps.
+     * A puzzle that was solved recently, possibly transposed or mirrored, is answered from the cache,
+     * or from the solution store if it was solved before the server started,
+     * with the solved board as the only step, unless {@code cache} is off.
+     * That step is on no line, and with {@code delta}, it is a keyframe.
+     * A puzzle that takes longer than the time limit to solve is answered with 503 Service Unavailable.
+     * With {@code countSolutions}, the solutions are counted up to that many instead, without steps,
+     * so that {@code countSolutions=2} tells whether the solution is unique.
+     * With {@code stats}, the output includes the counters of the solve, unless it was answered from the cache.
+     * The solve runs on the solver's own threads, and when too many puzzles are already waiting for them,
+     * the request is answered with 429 Too Many Requests.
+     */
     @CrossOrigin
     @PostMapping("/solve")
-    PuzzleOutput solve(@RequestBody PuzzleInput input)
-            throws PuzzleVerificationException, InvalidConstraintException {
+    CompletableFuture<ResponseEntity<PuzzleOutput>> solve(@RequestBody PuzzleInput input,
+                                       @RequestParam(defaultValue = "false") boolean delta,
+                                       @RequestParam(defaultValue = "50") int keyframeInterval,
+                                       @RequestParam(defaultValue = "true") boolean cache,
+                                       @RequestParam(defaultValue = "0") int countSolutions,
+                                       @RequestParam(defaultValue = "false") boolean stats)
+            throws PuzzleVerificationException {
         this.verifyPuzzleInput(input);
+        this.verifyKeyframeInterval(keyframeInterval);
+        CanonicalPuzzle canonicalPuzzle = CanonicalPuzzle.of(input.board, input.rowConstraints, input.colConstraints);
+        if (countSolutions > 0) {
+            return this.solveExecutor.submit(() -> this.countSolutions(input, canonicalPuzzle, countSolutions, stats));
+        }
+        if (cache) {
+            SolutionCache.Entry entry = this.solutionCache.get(canonicalPuzzle.getKey());
+            if (entry != null) {
+                PuzzleOutput output = this.toCachedOutput(canonicalPuzzle, entry.getSolution(), delta);
+                return CompletableFuture.completedFuture(ResponseEntity.ok(output));
+            }
+            SolutionStore.Entry storedEntry = this.solutionStore.get(canonicalPuzzle.getKey());
+            if (storedEntry != null) {
+                this.solutionCache.put(canonicalPuzzle.getKey(), storedEntry.getSolution());
+                PuzzleOutput output = this.toCachedOutput(canonicalPuzzle, storedEntry.getSolution(), delta);
+                return CompletableFuture.completedFuture(ResponseEntity.ok(output));
+            }
+        }
+        return this.solveExecutor.submit(() -> this.solve(input, canonicalPuzzle, delta, keyframeInterval, stats));
+    }
+
+    private ResponseEntity<PuzzleOutput> solve(PuzzleInput input, CanonicalPuzzle canonicalPuzzle, boolean delta,
+                                               int keyframeInterval, boolean stats)
+            throws InvalidConstraintException {
         Board board = new Board(input.board, input.rowConstraints, input.colConstraints);
         List<Step> steps = new ArrayList<>();
-        boolean[][] solution = board.solve(steps::add);
-        if (solution == null) {
-            return new PuzzleOutput("Unsolvable puzzle", steps);
+        SolveResult result = board.solve(steps::add, this.getSolveOptions(delta, keyframeInterval));
+        this.solveMetrics.record("solve", result);
+        boolean[][] solution = result.getSolution();
+        if (result.getOutcome() == SolveOutcome.BUDGET_EXHAUSTED) {
+            PuzzleOutput output = new PuzzleOutput(BUDGET_EXHAUSTED_ERROR);
+            output.stats = stats ? result.getStats() : null;
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(output);
+        }
+        this.remember(canonicalPuzzle, solution);
+        PuzzleOutput output = solution == null
+                ? new PuzzleOutput("Unsolvable puzzle", steps)
+                : new PuzzleOutput(solution, steps);
+        output.stats = stats ? result.getStats() : null;
+        return ResponseEntity.ok(output);
+    }
+
+    /**
+     * Solves a puzzle like {@code /solve}, but streams each step as a line of JSON as soon as it is found,
+     * instead of collecting them all first.
+     * The last line is the output without the steps.
+     * If the client disconnects, the solver is stopped.
+     * Since the response has started by then, running out of time is only reported on the last line.
+     * With {@code stats}, the last line includes the counters of the solve.
+     * The solve runs on the same threads as {@code /solve}, which build the board and write the response themselves,
+     * and shares its queue, so that past it the request is answered with 429 Too Many Requests as well.
+     * Nothing is written until the response is set up, so that every write waits for the client.
+     */
+    @CrossOrigin
+    @PostMapping("/solve/stream")
+    ResponseEntity<ResponseBodyEmitter> solveStream(@RequestBody PuzzleInput input,
+                                                    @RequestParam(defaultValue = "false") boolean delta,
+                                                    @RequestParam(defaultValue = "50") int keyframeInterval,
+                                                    @RequestParam(defaultValue = "false") boolean stats,
+                                                    HttpServletRequest request)
+            throws PuzzleVerificationException, InvalidConstraintException {
+        this.verifyPuzzleInput(input);
+        this.verifyKeyframeInterval(keyframeInterval);
+        // the clues are checked up front, as the response has started by the time the board is built
+        Board.checkConstraints(input.board, input.rowConstraints, input.colConstraints);
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+        StreamStart start = StreamStart.of(request);
+        this.solveExecutor.submit(() -> {
+            try {
+                if (!start.await()) {
+                    return null;
+                }
+                Board board = new Board(input.board, input.rowConstraints, input.colConstraints);
+                this.writeStream(board, emitter, delta, keyframeInterval, stats);
+                emitter.complete();
+            } catch (Throwable e) {
+                // the client has gone away, or the solver failed, either way the response is over
+                emitter.completeWithError(e);
+            }
+            return null;
+        });
+        return ResponseEntity.ok().contentType(NDJSON).body(emitter);
+    }
+
+    private void writeStream(Board board, ResponseBodyEmitter emitter, boolean delta, int keyframeInterval,
+                             boolean stats) throws IOException {
+        NdjsonWriter<Step> writer = new NdjsonWriter<>(this.objectMapper, new EmitterOutputStream(emitter));
+        SolveResult result = board.solve(writer, this.getSolveOptions(delta, keyframeInterval));
+        this.solveMetrics.record("stream", result);
+        PuzzleOutput output;
+        if (result.getOutcome() == SolveOutcome.BUDGET_EXHAUSTED) {
+            output = new PuzzleOutput(BUDGET_EXHAUSTED_ERROR);
+        } else if (result.getSolution() == null) {
+            output = new PuzzleOutput("Unsolvable puzzle");
         } else {
-            return new PuzzleOutput(solution, steps);
+            output = new PuzzleOutput(result.getSolution(), null);
         }
+        output.stats = stats ? result.getStats() : null;
+        writer.finish(output);
+    }
+
+    /**
+     * Solves a batch of puzzles, read as newline-delimited JSON with an optional {@code id} on each puzzle.
+     * Each result is streamed back as a line of JSON once it is solved, tagged with the id of its puzzle,
+     * so results come in the order the puzzles are solved, not the order they were sent in.
+     * The last line is a summary of the batch, with its throughput.
+     * The puzzles are solved by the batch workers, which bound how many are solved and wait at once across batches,
+     * so a batch is never refused, but waits for them, while the response is written on one of Spring's threads.
+     */
+    @CrossOrigin
+    @PostMapping("/solve/batch")
+    ResponseEntity<StreamingResponseBody> solveBatch(InputStream inputStream) {
+        StreamingResponseBody body = outputStream -> {
+            BatchInputReader reader = new BatchInputReader(this.objectMapper, inputStream);
+            NdjsonWriter<BatchSolver.Result> writer = new NdjsonWriter<>(this.objectMapper, outputStream);
+            BatchSolver.Summary summary;
+            try {
+                summary = this.batchSolver.solveAll(reader, writer);
+            } catch (UncheckedIOException e) {
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            summary.error = reader.getError();
+            writer.finish(summary);
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    /**
+     * Queues a puzzle to be solved as a job, for puzzles that take too long to solve within a request,
+     * and answers right away with 202 Accepted and the status of the job, at the location to poll it from.
+     * Jobs with a higher {@code priority} run first.
+     * With {@code countSolutions}, the job counts the solutions up to that many.
+     * When too many jobs are already waiting, the request is answered with 429 Too Many Requests.
+     */
+    @CrossOrigin
+    @PostMapping("/jobs")
+    ResponseEntity<JobManager.JobStatus> submitJob(@RequestBody PuzzleInput input,
+                                                   @RequestParam(defaultValue = "0") int priority,
+                                                   @RequestParam(defaultValue = "0") int countSolutions)
+            throws PuzzleVerificationException, InvalidConstraintException {
+        this.verifyPuzzleInput(input);
+        JobManager.JobStatus status = this.jobManager.submit(input.board, input.rowConstraints, input.colConstraints,
+                countSolutions, priority);
+        return ResponseEntity.accepted().location(URI.create("/jobs/" + status.id)).body(status);
+    }
+
+    /**
+     * Gives the status of a job, with its progress while it runs, and its result once it is finished,
+     * until the retention after that.
+     */
+    @CrossOrigin
+    @GetMapping("/jobs/{id}")
+    ResponseEntity<JobManager.JobStatus> getJob(@PathVariable String id) {
+        JobManager.JobStatus status = this.jobManager.get(id);
+        return status == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(status);
+    }
+
+    /**
+     * Cancels a job that is waiting or running, or forgets a finished one.
+     */
+    @CrossOrigin
+    @DeleteMapping("/jobs/{id}")
+    ResponseEntity<JobManager.JobStatus> cancelJob(@PathVariable String id) throws IOException {
+        JobManager.JobStatus status = this.jobManager.cancel(id);
+        return status == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(status);
+    }
+
+    private ResponseEntity<PuzzleOutput> countSolutions(PuzzleInput input, CanonicalPuzzle canonicalPuzzle, int limit,
+                                                        boolean stats) throws InvalidConstraintException {
+        Board board = new Board(input.board, input.rowConstraints, input.colConstraints);
+        SolveResult result = board.solve(null, this.solveOptions.withSolutionLimit(limit));
+        this.solveMetrics.record("count", result);
+        if (result.getOutcome() == SolveOutcome.BUDGET_EXHAUSTED) {
+            PuzzleOutput output = new PuzzleOutput(BUDGET_EXHAUSTED_ERROR);
+            output.stats = stats ? result.getStats() : null;
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(output);
+        }
+        boolean[][] solution = result.getSolution();
+        this.remember(canonicalPuzzle, solution);
+        PuzzleOutput output = solution == null
+                ? new PuzzleOutput("Unsolvable puzzle")
+                : new PuzzleOutput(solution, null);
+        output.solutionCount = result.getSolutionCount();
+        output.stats = stats ? result.getStats() : null;
+        return ResponseEntity.ok(output);
+    }
+
+    private SolveOptions getSolveOptions(boolean delta, int keyframeInterval) {
+        return delta ? this.solveOptions.withDeltaSteps(keyframeInterval) : this.solveOptions;
+    }
+
+    /**
+     * Keeps the result of a solve in the cache and the solution store.
+     * @param solution The solution as given, or {@code null} if the puzzle is unsolvable.
+     */
+    private void remember(CanonicalPuzzle canonicalPuzzle, boolean[][] solution) {
+        boolean[][] canonicalSolution = solution == null ? null : canonicalPuzzle.toCanonical(solution);
+        this.solutionCache.put(canonicalPuzzle.getKey(), canonicalSolution);
+        this.solutionStore.put(canonicalPuzzle.getKey(), canonicalSolution);
+    }
+
+    private PuzzleOutput toCachedOutput(CanonicalPuzzle canonicalPuzzle, boolean[][] canonicalSolution,
+                                        boolean delta) {
+        if (canonicalSolution == null) {
+            return new PuzzleOutput("Unsolvable puzzle", Collections.emptyList());
+        }
+        boolean[][] solution = canonicalPuzzle.fromCanonical(canonicalSolution);
+        int[][] cells = new int[solution.length][solution[0].length];
+        for (int i = 0; i < solution.length; i++) {
+            for (int j = 0; j < solution[i].length; j++) {
+                cells[i][j] = solution[i][j] ? 2 : 1;
+            }
+        }
+        return new PuzzleOutput(solution, Collections.singletonList(delta ? new DeltaStep(cells) : new Step(cells)));
     }
 
     private void verifyPuzzleInput(PuzzleInput input) throws PuzzleVerificationException {
@@ -100,6 +385,12 @@ public class Controller {
         }
     }
 
+    private void verifyKeyframeInterval(int keyframeInterval) throws PuzzleVerificationException {
+        if (keyframeInterval < 1) {
+            throw new PuzzleVerificationException("Keyframe interval must be at least 1");
+        }
+    }
+
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(PuzzleVerificationException.class)
     public PuzzleOutput puzzleVerificationExceptionHandler(Exception e) {
@@ -111,4 +402,11 @@ public class Controller {
     public PuzzleOutput invalidConstraintExceptionHandler() {
         return new PuzzleOutput("At least one of the constraints is invalid");
     }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<PuzzleOutput> rejectedExecutionExceptionHandler() {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new PuzzleOutput(TOO_MANY_REQUESTS_ERROR));
+    }
 }
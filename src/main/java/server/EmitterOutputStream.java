@@ -0,0 +1,34 @@
+package server;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Sends what is written to a {@link ResponseBodyEmitter} as raw bytes,
+ * so that a response can be written from a thread of our own, such as a solver thread, instead of one of Spring's.
+ * Each write is sent as it is, so writers should buffer at least a whole line,
+ * as a {@link com.fasterxml.jackson.core.JsonGenerator} does until it is flushed.
+ */
+class EmitterOutputStream extends OutputStream {
+    private final ResponseBodyEmitter emitter;
+
+    EmitterOutputStream(ResponseBodyEmitter emitter) {
+        this.emitter = emitter;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        this.write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (length > 0) {
+            this.emitter.send(Arrays.copyOfRange(bytes, offset, offset + length), MediaType.APPLICATION_OCTET_STREAM);
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package server;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import solver.Board;
+import solver.CancellationToken;
+import solver.Checkpoint;
+import solver.Search;
+import solver.SearchProgress;
+import solver.SolveOptions;
+import solver.SolveResult;
+import solver.SolverStats;
+import solver.exceptions.InvalidConstraintException;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs solves as jobs that outlive the request that submitted them, for puzzles that take longer to solve
+ * than a client or a load balancer keeps a connection open.
+ * A job is polled for its progress until it is finished, and its result is kept for the retention after that.
+ * Jobs wait for a pool of their own in a queue ordered by priority, highest first, and then by when they came,
+ * so that they never hold up single solves. Once the queue is full, further jobs are refused.
+ * With {@code nonogram.jobs.checkpoint-directory}, the search of each running job is saved there every
+ * {@code nonogram.jobs.checkpoint-interval}, and on shutdown, and the jobs saved there are resumed on startup.
+ */
+@Component
+public class JobManager implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobManager.class);
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    /**
+     * Whether a job is waiting, running, or finished, and then, how.
+     * The statuses past {@link #RUNNING} are named after the {@link solver.SolveOutcome} of the job,
+     * but for {@link #FAILED}.
+     */
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        SOLVED,
+        UNSOLVABLE,
+        BUDGET_EXHAUSTED,
+        CANCELLED,
+        FAILED,
+    }
+
+    public static class JobStatus {
+        public String id;
+        public Status status;
+        public int priority;
+        /**
+         * Whether the job was resumed from a checkpoint after a restart.
+         */
+        public boolean resumed;
+        public long queuedMillis;
+        public long runningMillis;
+        /**
+         * {@code null} until the job is running.
+         */
+        public SearchProgress progress;
+        public boolean[][] solution;
+        public Integer solutionCount;
+        public SolverStats stats;
+        public String error;
+    }
+
+    private class Job implements Runnable {
+        private final String id;
+        private final int priority;
+        private final long sequence;
+        private final boolean[][] cells;
+        private final int[][] rowConstraints;
+        private final int[][] colConstraints;
+        private final int solutionLimit;
+        /**
+         * The checkpoint a job is resumed from, or {@code null} if it is not, or once it is running.
+         */
+        private Checkpoint checkpoint;
+        private final boolean isResumed;
+        private final CancellationToken cancellationToken = new CancellationToken();
+        private final long queuedNanos = System.nanoTime();
+        private volatile long startNanos = 0;
+        private volatile long finishNanos = 0;
+        private volatile Status status = Status.QUEUED;
+        /**
+         * The search of a running job, dropped once it is finished, as it holds on to the whole board,
+         * with the progress it made kept instead.
+         */
+        private volatile Search search = null;
+        private volatile SearchProgress progress = null;
+        private volatile SolveResult result = null;
+        private volatile String error = null;
+
+        private Job(String id, int priority, boolean[][] cells, int[][] rowConstraints, int[][] colConstraints,
+                    int solutionLimit, Checkpoint checkpoint) {
+            this.id = id;
+            this.priority = priority;
+            this.sequence = JobManager.this.sequence.getAndIncrement();
+            this.cells = cells;
+            this.rowConstraints = rowConstraints;
+            this.colConstraints = colConstraints;
+            this.solutionLimit = solutionLimit;
+            this.checkpoint = checkpoint;
+            this.isResumed = checkpoint != null;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (this.status != Status.QUEUED
+                        || JobManager.this.isClosing && JobManager.this.checkpointDirectory == null) {
+                    return;
+                }
+                this.status = Status.RUNNING;
+                this.startNanos = System.nanoTime();
+            }
+            try {
+                SolveOptions options = JobManager.this.solveOptions.withSolutionLimit(this.solutionLimit)
+                        .withCancellationToken(this.cancellationToken);
+                // the board is only built once the job runs, as it is what takes the time and memory
+                Search search = this.checkpoint == null
+                        ? new Board(this.cells, this.rowConstraints, this.colConstraints).startSearch(null, options)
+                        : this.checkpoint.resume(null, options);
+                this.checkpoint = null;
+                this.search = search;
+                SolveResult result = JobManager.this.runSearch(this, search);
+                if (result != null) {
+                    JobManager.this.solveMetrics.record("job", result);
+                    this.result = result;
+                    this.finish(Status.valueOf(result.getOutcome().name()));
+                }
+            } catch (InvalidConstraintException e) {
+                this.error = "At least one of the constraints is invalid";
+                this.finish(Status.FAILED);
+            } catch (Throwable e) {
+                // errors too, such as running out of memory, or the job would look like it is running forever
+                LOGGER.warn("Job {} failed", this.id, e);
+                this.error = e.toString();
+                this.finish(Status.FAILED);
+            }
+        }
+
+        private synchronized void finish(Status status) {
+            Search search = this.search;
+            if (search != null) {
+                this.progress = search.getProgress();
+            }
+            this.search = null;
+            this.checkpoint = null;
+            this.finishNanos = System.nanoTime();
+            this.status = status;
+        }
+
+        private JobStatus toStatus() {
+            JobStatus jobStatus = new JobStatus();
+            jobStatus.id = this.id;
+            jobStatus.status = this.status;
+            jobStatus.priority = this.priority;
+            jobStatus.resumed = this.isResumed;
+            long now = System.nanoTime();
+            long startNanos = this.startNanos;
+            long finishNanos = this.finishNanos;
+            jobStatus.queuedMillis = TimeUnit.NANOSECONDS.toMillis((startNanos == 0 ? now : startNanos) - this.queuedNanos);
+            jobStatus.runningMillis = startNanos == 0
+                    ? 0 : TimeUnit.NANOSECONDS.toMillis((finishNanos == 0 ? now : finishNanos) - startNanos);
+            Search search = this.search;
+            jobStatus.progress = search == null ? this.progress : search.getProgress();
+            SolveResult result = this.result;
+            if (result != null) {
+                jobStatus.solution = result.getSolution();
+                jobStatus.solutionCount = this.solutionLimit > 1 ? result.getSolutionCount() : null;
+                jobStatus.stats = result.getStats();
+            }
+            jobStatus.error = this.error;
+            return jobStatus;
+        }
+    }
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService scheduler;
+    private final int queueCapacity;
+    private final SolveOptions solveOptions;
+    private final long retentionNanos;
+    private final Path checkpointDirectory;
+    private final SolveMetrics solveMetrics;
+    private volatile boolean isClosing = false;
+
+    /**
+     * @param threadCount The number of jobs run at once, 0 for one per processor.
+     * @param queueCapacity The number of jobs that may wait for a thread.
+     * @param timeout How long a job may run, 0 for no limit.
+     * @param retention How long a finished job is kept.
+     * @param checkpointDirectory Where to save running jobs, or blank not to.
+     */
+    public JobManager(@Value("${nonogram.jobs.threads:0}") int threadCount,
+                      @Value("${nonogram.jobs.queue-capacity:100}") int queueCapacity,
+                      @Value("${nonogram.jobs.timeout:0}") Duration timeout,
+                      @Value("${nonogram.jobs.retention:1h}") Duration retention,
+                      @Value("${nonogram.jobs.checkpoint-directory:}") String checkpointDirectory,
+                      @Value("${nonogram.jobs.checkpoint-interval:1m}") Duration checkpointInterval,
+                      SolveMetrics solveMetrics, MeterRegistry registry) throws IOException {
+        if (threadCount <= 0) {
+            threadCount = Runtime.getRuntime().availableProcessors();
+        }
+        this.queueCapacity = queueCapacity;
+        this.solveOptions = SolveOptions.DEFAULT.withTimeout(timeout.isZero() ? null : timeout);
+        this.retentionNanos = retention.toNanos();
+        this.checkpointDirectory = checkpointDirectory.isBlank() ? null : Path.of(checkpointDirectory);
+        this.solveMetrics = solveMetrics;
+
+        AtomicInteger jobThreadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threadCount, threadCount, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(16, (a, b) -> {
+                    Job first = (Job) a;
+                    Job second = (Job) b;
+                    return first.priority != second.priority
+                            ? Integer.compare(second.priority, first.priority)
+                            : Long.compare(first.sequence, second.sequence);
+                }),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "job-" + jobThreadCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        new ExecutorServiceMetrics(this.executor, "jobs", Tags.empty()).bindTo(registry);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jobs-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long retentionCheckMillis = Math.min(Math.max(retention.toMillis() / 2, 1000), 60000);
+        this.scheduler.scheduleAtFixedRate(this::removeExpiredJobs, retentionCheckMillis, retentionCheckMillis,
+                TimeUnit.MILLISECONDS);
+        if (this.checkpointDirectory != null) {
+            long checkpointMillis = Math.max(1, checkpointInterval.toMillis());
+            this.scheduler.scheduleAtFixedRate(this::pauseRunningJobs, checkpointMillis, checkpointMillis,
+                    TimeUnit.MILLISECONDS);
+            Files.createDirectories(this.checkpointDirectory);
+            this.resumeJobs();
+        }
+    }
+
+    /**
+     * Queues a job to solve a puzzle, or count its solutions up to {@code solutionLimit} if it is more than 1.
+     * Only the puzzle is kept while the job waits, and its board is built once the job runs,
+     * so that a refused or waiting job does not take the time and memory of its constraints.
+     * @return The status of the new job.
+     * @throws RejectedExecutionException If the queue is full.
+     */
+    public JobStatus submit(boolean[][] cells, int[][] rowConstraints, int[][] colConstraints, int solutionLimit,
+                            int priority) throws InvalidConstraintException {
+        Job job;
+        synchronized (this.executor) {
+            if (this.isClosing || this.executor.getQueue().size() >= this.queueCapacity) {
+                throw new RejectedExecutionException();
+            }
+            Board.checkConstraints(cells, rowConstraints, colConstraints);
+            job = new Job(UUID.randomUUID().toString(), priority, cells, rowConstraints, colConstraints,
+                    Math.max(1, solutionLimit), null);
+            this.jobs.put(job.id, job);
+            this.executor.execute(job);
+        }
+        return job.toStatus();
+    }
+
+    /**
+     * @return The status of the job, or {@code null} if there is no such job, or it finished past the retention.
+     */
+    public JobStatus get(String id) {
+        Job job = this.jobs.get(id);
+        return job == null ? null : job.toStatus();
+    }
+
+    /**
+     * Cancels a job that is waiting or running, or forgets a finished one.
+     * A running job stops before its next node, so its status may still be running right after this.
+     * @return The status of the job, or {@code null} if there is no such job.
+     */
+    public JobStatus cancel(String id) throws IOException {
+        Job job = this.jobs.get(id);
+        if (job == null) {
+            return null;
+        }
+        synchronized (job) {
+            if (job.status == Status.QUEUED) {
+                this.executor.remove(job);
+                job.finish(Status.CANCELLED);
+                if (job.isResumed) {
+                    Files.deleteIfExists(this.getCheckpointPath(id));
+                }
+            } else if (job.status != Status.RUNNING) {
+                this.jobs.remove(id);
+            }
+        }
+        job.cancellationToken.cancel();
+        return job.toStatus();
+    }
+
+    /**
+     * Runs the search of a job to the end, saving it every checkpoint interval if there is a directory to save it to.
+     * @return The result, or {@code null} if the server is shutting down, and the job is left to resume.
+     */
+    private SolveResult runSearch(Job job, Search search) throws IOException {
+        if (this.checkpointDirectory == null) {
+            search.run();
+            return search.getResult();
+        }
+        Path path = this.getCheckpointPath(job.id);
+        // saves the job right away, so that it is not lost if the server stops before the first interval
+        search.pause();
+        while (!search.run()) {
+            new Checkpoint(job.cells, job.rowConstraints, job.colConstraints, search.snapshot()).write(path);
+            if (this.isClosing) {
+                return null;
+            }
+        }
+        Files.deleteIfExists(path);
+        return search.getResult();
+    }
+
+    private Path getCheckpointPath(String id) {
+        return this.checkpointDirectory.resolve(id + CHECKPOINT_SUFFIX);
+    }
+
+    private void pauseRunningJobs() {
+        for (Job job: this.jobs.values()) {
+            Search search = job.search;
+            if (search != null && job.status == Status.RUNNING) {
+                search.pause();
+            }
+        }
+    }
+
+    private void removeExpiredJobs() {
+        long now = System.nanoTime();
+        this.jobs.values().removeIf(job -> job.finishNanos != 0 && now - job.finishNanos > this.retentionNanos);
+    }
+
+    /**
+     * Queues the jobs saved in the checkpoint directory, ahead of the queue capacity, as they were accepted before.
+     * Their priority is not saved, so they come back at the default one.
+     */
+    private void resumeJobs() throws IOException {
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(this.checkpointDirectory, "*" + CHECKPOINT_SUFFIX)) {
+            for (Path path: paths) {
+                String fileName = path.getFileName().toString();
+                String id = fileName.substring(0, fileName.length() - CHECKPOINT_SUFFIX.length());
+                Checkpoint checkpoint;
+                try {
+                    checkpoint = Checkpoint.read(path);
+                } catch (IOException e) {
+                    LOGGER.warn("Not resuming job {}", id, e);
+                    continue;
+                }
+                Job job = new Job(id, 0, checkpoint.getCells(), checkpoint.getRowConstraints(),
+                        checkpoint.getColConstraints(), checkpoint.getSnapshot().getSolutionLimit(), checkpoint);
+                this.jobs.put(id, job);
+                this.executor.execute(job);
+                LOGGER.info("Resuming job {} after {} nodes", id, checkpoint.getSnapshot().getNodeCount());
+            }
+        }
+    }
+
+    /**
+     * Stops the running jobs, after saving them if there is a checkpoint directory, and cancelling them otherwise.
+     * The jobs still waiting are saved as well, or dropped if there is nowhere to save them.
+     * The threads are not interrupted, as that would close the checkpoint being written.
+     */
+    @Override
+    public void close() {
+        this.isClosing = true;
+        this.scheduler.shutdownNow();
+        for (Job job: this.jobs.values()) {
+            if (this.checkpointDirectory == null) {
+                job.cancellationToken.cancel();
+            } else if (job.search != null) {
+                job.search.pause();
+            }
+        }
+        this.executor.shutdown();
+        try {
+            this.executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package server;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Writes objects to a response as newline-delimited JSON, such as steps as soon as the solver produces them.
+ * Each object is flushed to the client with its newline once it is written, so that it arrives whole and right away.
+ * Writes block while the client is not reading, which holds the solver back,
+ * and fail once the client has gone away, which stops the solver with an {@link UncheckedIOException}.
+ */
+public class NdjsonWriter<T> implements Consumer<T> {
+    private final ObjectWriter writer;
+    private final JsonGenerator generator;
+
+    public NdjsonWriter(ObjectMapper objectMapper, OutputStream outputStream) throws IOException {
+        // the line is flushed once its newline is written, not before
+        this.writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.generator = objectMapper.getFactory().createGenerator(outputStream);
+        // each line ends with its own newline, rather than the next one starting with it
+        this.generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+    }
+
+    @Override
+    public void accept(T value) {
+        try {
+            this.writeLine(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the last line of the stream.
+     */
+    public void finish(Object result) throws IOException {
+        this.writeLine(result);
+    }
+
+    private void writeLine(Object value) throws IOException {
+        this.writer.writeValue(this.generator, value);
+        this.generator.writeRaw('\n');
+        this.generator.flush();
+    }
+}
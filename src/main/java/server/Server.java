@@ -1,11 +1,46 @@
 package server;
 
+import batch.BatchSolver;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.util.unit.DataSize;
+import solver.CombinationTable;
+import solver.SolveOptions;
+
+import java.time.Duration;
 
 @SpringBootApplication
-public class Server {
+public class Server implements WebMvcConfigurer {
     public static void main(String[] args) {
         SpringApplication.run(Server.class, args);
     }
+
+    /**
+     * Bounds the combination tables kept for reuse, which are shared by the lines of all requests.
+     */
+    @Value("${nonogram.combinations.cache-size:32MB}")
+    public void setCombinationCacheSize(DataSize cacheSize) {
+        CombinationTable.setCacheCapacity(cacheSize.toBytes());
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new StreamStart.Interceptor()).addPathPatterns("/solve/stream");
+    }
+
+    @Bean
+    public BatchSolver batchSolver(@Value("${nonogram.batch.threads:0}") int threadCount,
+                                   @Value("${nonogram.batch.queue-capacity:64}") int queueCapacity,
+                                   @Value("${nonogram.solve.timeout:30s}") Duration timeout,
+                                   @Value("${nonogram.solve.max-nodes:0}") long maxNodes) {
+        if (threadCount <= 0) {
+            threadCount = Runtime.getRuntime().availableProcessors();
+        }
+        SolveOptions options = SolveOptions.DEFAULT.withTimeout(timeout).withMaxNodes(maxNodes);
+        return new BatchSolver(threadCount, queueCapacity, options);
+    }
 }
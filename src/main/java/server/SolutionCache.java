@@ -0,0 +1,132 @@
+package server;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the solutions of recently solved puzzles, keyed by {@link CanonicalPuzzle#getKey()},
+ * so that a puzzle and its transposed and mirrored variants are only solved once.
+ * Holds at most {@code nonogram.cache.max-size} puzzles, evicting the least recently used one,
+ * and forgets a solution {@code nonogram.cache.ttl} after it was stored.
+ * Its hits, misses, evictions and size are served as {@code nonogram.cache.*} metrics.
+ */
+@Component
+public class SolutionCache {
+    /**
+     * A cached result, where a {@code null} solution means the puzzle is unsolvable.
+     */
+    public static class Entry {
+        private final boolean[][] solution;
+        private final long expiresAt;
+
+        private Entry(boolean[][] solution, long expiresAt) {
+            this.solution = solution;
+            this.expiresAt = expiresAt;
+        }
+
+        public boolean[][] getSolution() {
+            return this.solution;
+        }
+    }
+
+    public static class Stats {
+        public long hits;
+        public long misses;
+        public long evictions;
+        public long expirations;
+        public int size;
+        public int maxSize;
+    }
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long expirations = 0;
+
+    public SolutionCache(@Value("${nonogram.cache.max-size:1000}") int maxSize,
+                         @Value("${nonogram.cache.ttl:1h}") Duration ttl,
+                         MeterRegistry registry) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SolutionCache.Entry> eldest) {
+                if (this.size() <= SolutionCache.this.maxSize) {
+                    return false;
+                }
+                SolutionCache.this.evictions++;
+                return true;
+            }
+        };
+        FunctionCounter.builder("nonogram.cache.gets", this, cache -> cache.getStats().hits)
+                .description("Lookups of cached solutions")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("nonogram.cache.gets", this, cache -> cache.getStats().misses)
+                .description("Lookups of cached solutions")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("nonogram.cache.evictions", this, cache -> cache.getStats().evictions)
+                .description("Solutions removed from the cache")
+                .tag("cause", "size")
+                .register(registry);
+        FunctionCounter.builder("nonogram.cache.evictions", this, cache -> cache.getStats().expirations)
+                .description("Solutions removed from the cache")
+                .tag("cause", "expired")
+                .register(registry);
+        Gauge.builder("nonogram.cache.size", this, cache -> cache.getStats().size)
+                .description("Solutions in the cache")
+                .register(registry);
+    }
+
+    /**
+     * Finds the cached result of the canonical puzzle, with the solution in the canonical orientation.
+     * @return {@code null} if the puzzle is not cached.
+     */
+    public synchronized Entry get(String key) {
+        Entry entry = this.entries.get(key);
+        if (entry != null && entry.expiresAt - System.nanoTime() <= 0) {
+            this.entries.remove(key);
+            this.expirations++;
+            entry = null;
+        }
+        if (entry == null) {
+            this.misses++;
+        } else {
+            this.hits++;
+        }
+        return entry;
+    }
+
+    /**
+     * Stores the result of the canonical puzzle.
+     * @param solution The solution in the canonical orientation, or {@code null} if the puzzle is unsolvable.
+     */
+    public synchronized void put(String key, boolean[][] solution) {
+        if (this.maxSize <= 0) {
+            return;
+        }
+        this.entries.put(key, new Entry(solution, System.nanoTime() + this.ttlNanos));
+    }
+
+    public synchronized Stats getStats() {
+        Stats stats = new Stats();
+        stats.hits = this.hits;
+        stats.misses = this.misses;
+        stats.evictions = this.evictions;
+        stats.expirations = this.expirations;
+        stats.size = this.entries.size();
+        stats.maxSize = this.maxSize;
+        return stats;
+    }
+}
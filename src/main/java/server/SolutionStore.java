@@ -0,0 +1,545 @@
+package server;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the results of solved puzzles on disk, keyed by {@link CanonicalPuzzle#getKey()},
+ * so that they outlive a restart of the server, unlike the {@link SolutionCache}.
+ * Disabled unless {@code nonogram.store.path} is set.
+ * <p>
+ * The store is a log that is only ever appended to, with an index of where each puzzle is in memory,
+ * rebuilt at startup by scanning the log through a memory map.
+ * Each record is its length, the CRC32 of the rest of it, the key, the number of rows and of columns,
+ * and the solution as a bitmap, row by row, where no rows and no columns mean the puzzle is unsolvable.
+ * Appends are flushed to disk together, every {@code nonogram.store.sync-interval}, or on each append if it is 0,
+ * so a crash loses at most the results of that interval.
+ * A record that was only partly written, or fails its checksum, ends the log, and is cut off when the store opens.
+ * Once records that were stored again take up more of the log than the live ones, the log is compacted
+ * into a new file that replaces it.
+ * Its hits, misses, size and compactions are served as {@code nonogram.store.*} metrics while it is enabled.
+ */
+@Component
+public class SolutionStore implements AutoCloseable {
+    /**
+     * A stored result, where a {@code null} solution means the puzzle is unsolvable.
+     */
+    public static class Entry {
+        private final boolean[][] solution;
+
+        private Entry(boolean[][] solution) {
+            this.solution = solution;
+        }
+
+        public boolean[][] getSolution() {
+            return this.solution;
+        }
+    }
+
+    public static class Stats {
+        public boolean enabled;
+        public int size;
+        public long hits;
+        public long misses;
+        public long fileBytes;
+        public long liveBytes;
+        public long compactions;
+        public double rebuildMillis;
+    }
+
+    private static class Location {
+        private final long offset;
+        private final int length;
+
+        private Location(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SolutionStore.class);
+    private static final byte[] MAGIC = {'N', 'S', 'O', 'L'};
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = MAGIC.length + 1;
+    private static final int KEY_LENGTH = 32;
+    private static final int RECORD_HEADER_LENGTH = 8;
+    private static final int MIN_PAYLOAD_LENGTH = KEY_LENGTH + 8;
+    private static final int MAX_PAYLOAD_LENGTH = 1 << 24;
+    private static final int MAP_WINDOW_SIZE = 1 << 30;
+    private static final long MIN_COMPACTION_BYTES = 1 << 20;
+
+    private final Path path;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Location> index = new HashMap<>();
+    private final AtomicBoolean isDirty = new AtomicBoolean();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final ScheduledExecutorService syncExecutor;
+    private FileChannel channel = null;
+    private long fileBytes = 0;
+    private long liveBytes = 0;
+    private long compactions = 0;
+    private double rebuildMillis = 0;
+
+    /**
+     * @param path The file of the log, created if it does not exist, or blank to disable the store.
+     * @param syncInterval How long appends may wait to be flushed to disk.
+     */
+    public SolutionStore(@Value("${nonogram.store.path:}") String path,
+                         @Value("${nonogram.store.sync-interval:100ms}") Duration syncInterval,
+                         MeterRegistry registry) throws IOException {
+        if (path.isBlank()) {
+            this.path = null;
+            this.syncExecutor = null;
+            return;
+        }
+        this.path = Paths.get(path);
+        this.open();
+        this.bindMetrics(registry);
+        if (syncInterval.isZero()) {
+            this.syncExecutor = null;
+        } else {
+            this.syncExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "solution-store-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long millis = Math.max(1, syncInterval.toMillis());
+            this.syncExecutor.scheduleWithFixedDelay(this::sync, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return this.path != null;
+    }
+
+    /**
+     * Finds the stored result of the canonical puzzle, with the solution in the canonical orientation.
+     * @return {@code null} if the puzzle is not stored, or the store is disabled or cannot be read.
+     */
+    public Entry get(String key) {
+        if (!this.isEnabled()) {
+            return null;
+        }
+        this.lock.readLock().lock();
+        try {
+            Location location = this.index.get(key);
+            if (location == null) {
+                this.misses.incrementAndGet();
+                return null;
+            }
+            ByteBuffer record = ByteBuffer.allocate(location.length);
+            while (record.hasRemaining()) {
+                if (this.channel.read(record, location.offset + record.position()) < 0) {
+                    throw new IOException("Record past the end of the log");
+                }
+            }
+            record.flip();
+            int length = record.getInt();
+            if (length != location.length - RECORD_HEADER_LENGTH || !isChecksumValid(record, length)) {
+                throw new IOException("Record fails its checksum");
+            }
+            this.hits.incrementAndGet();
+            return new Entry(decodeSolution(record.position(RECORD_HEADER_LENGTH + KEY_LENGTH)));
+        } catch (IOException e) {
+            LOGGER.warn("Could not read puzzle {} from {}", key, this.path, e);
+            this.misses.incrementAndGet();
+            return null;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Appends the result of the canonical puzzle to the log, unless the store is disabled,
+     * or already has that result for the puzzle, as solves that skip the cache store the same results again.
+     * Failing to write is logged, as the result can always be solved again.
+     * @param solution The solution in the canonical orientation, or {@code null} if the puzzle is unsolvable.
+     */
+    public void put(String key, boolean[][] solution) {
+        if (!this.isEnabled()) {
+            return;
+        }
+        ByteBuffer record = encode(key, solution);
+        this.lock.writeLock().lock();
+        try {
+            Location location = this.index.get(key);
+            if (location != null && this.isStored(location, record)) {
+                return;
+            }
+            long offset = this.fileBytes;
+            while (record.hasRemaining()) {
+                this.channel.write(record, offset + record.position());
+            }
+            this.fileBytes += record.limit();
+            this.addToIndex(key, new Location(offset, record.limit()));
+            if (this.syncExecutor == null) {
+                this.channel.force(false);
+            } else {
+                this.isDirty.set(true);
+            }
+            if (this.shouldCompact()) {
+                this.compactLocked();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not store puzzle {} in {}", key, this.path, e);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private boolean isStored(Location location, ByteBuffer record) throws IOException {
+        if (location.length != record.limit()) {
+            return false;
+        }
+        ByteBuffer stored = ByteBuffer.allocate(location.length);
+        while (stored.hasRemaining()) {
+            if (this.channel.read(stored, location.offset + stored.position()) < 0) {
+                return false;
+            }
+        }
+        return stored.flip().equals(record);
+    }
+
+    /**
+     * Rewrites the log with only the latest record of each puzzle.
+     */
+    public void compact() throws IOException {
+        if (!this.isEnabled()) {
+            return;
+        }
+        this.lock.writeLock().lock();
+        try {
+            this.compactLocked();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public Stats getStats() {
+        Stats stats = new Stats();
+        stats.enabled = this.isEnabled();
+        stats.hits = this.hits.get();
+        stats.misses = this.misses.get();
+        this.lock.readLock().lock();
+        try {
+            stats.size = this.index.size();
+            stats.fileBytes = this.fileBytes;
+            stats.liveBytes = this.liveBytes;
+            stats.compactions = this.compactions;
+            stats.rebuildMillis = this.rebuildMillis;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return stats;
+    }
+
+    private void bindMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("nonogram.store.gets", this, store -> store.hits.get())
+                .description("Lookups of stored solutions")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("nonogram.store.gets", this, store -> store.misses.get())
+                .description("Lookups of stored solutions")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("nonogram.store.compactions", this, store -> store.getStats().compactions)
+                .description("Rewrites of the log without its stale records")
+                .register(registry);
+        Gauge.builder("nonogram.store.size", this, store -> store.getStats().size)
+                .description("Solutions in the store")
+                .register(registry);
+        Gauge.builder("nonogram.store.file.size", this, store -> store.getStats().fileBytes)
+                .description("Length of the log")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("nonogram.store.live.size", this, store -> store.getStats().liveBytes)
+                .description("Length of the latest record of each solution in the log")
+                .baseUnit("bytes")
+                .register(registry);
+        TimeGauge.builder("nonogram.store.rebuild.time", this, TimeUnit.MILLISECONDS,
+                        store -> store.getStats().rebuildMillis)
+                .description("Time taken to rebuild the index when the store was opened")
+                .register(registry);
+    }
+
+    /**
+     * Opens the log, or creates it, and rebuilds the index from its records.
+     */
+    private void open() throws IOException {
+        long start = System.nanoTime();
+        this.channel = FileChannel.open(this.path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = this.channel.size();
+            if (size == 0) {
+                this.channel.write(ByteBuffer.wrap(header()), 0);
+                this.channel.force(true);
+                size = HEADER_LENGTH;
+            }
+            long end = this.scan(size);
+            if (end < size) {
+                LOGGER.warn("Discarding {} bytes of an incomplete record at the end of {}", size - end, this.path);
+                this.channel.truncate(end);
+                this.channel.force(true);
+            }
+            this.fileBytes = end;
+            if (this.shouldCompact()) {
+                this.compactLocked();
+            }
+        } catch (IOException e) {
+            this.channel.close();
+            throw e;
+        }
+        this.rebuildMillis = (System.nanoTime() - start) / 1e6;
+        LOGGER.info("Opened {} with {} puzzles in {} ms", this.path, this.index.size(), Math.round(this.rebuildMillis));
+    }
+
+    /**
+     * Indexes the records of the log, mapping it into memory a window at a time.
+     * @return Where the last complete record ends.
+     */
+    private long scan(long size) throws IOException {
+        MappedByteBuffer window = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAP_WINDOW_SIZE));
+        byte[] header = new byte[HEADER_LENGTH];
+        if (size >= HEADER_LENGTH) {
+            window.get(header);
+        }
+        if (!Arrays.equals(header, header())) {
+            throw new IOException("Not a solution store of version " + VERSION + ": " + this.path);
+        }
+
+        long windowStart = 0;
+        long position = HEADER_LENGTH;
+        byte[] key = new byte[KEY_LENGTH];
+        while (position + RECORD_HEADER_LENGTH <= size) {
+            if (position + RECORD_HEADER_LENGTH > windowStart + window.capacity()) {
+                windowStart = position;
+                window = this.channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                        Math.min(size - windowStart, MAP_WINDOW_SIZE));
+            }
+            int length = window.getInt((int) (position - windowStart));
+            if (length < MIN_PAYLOAD_LENGTH || length > MAX_PAYLOAD_LENGTH
+                    || position + RECORD_HEADER_LENGTH + length > size) {
+                break;
+            }
+            if (position + RECORD_HEADER_LENGTH + length > windowStart + window.capacity()) {
+                windowStart = position;
+                window = this.channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                        Math.min(size - windowStart, Math.max(MAP_WINDOW_SIZE, RECORD_HEADER_LENGTH + length)));
+            }
+            ByteBuffer record = window.duplicate();
+            record.position((int) (position - windowStart));
+            record.limit(record.position() + RECORD_HEADER_LENGTH + length);
+            record = record.slice();
+            if (!isChecksumValid(record.position(4), length)) {
+                break;
+            }
+            record.position(RECORD_HEADER_LENGTH).get(key);
+            this.addToIndex(toHex(key), new Location(position, RECORD_HEADER_LENGTH + length));
+            position += RECORD_HEADER_LENGTH + length;
+        }
+        return position;
+    }
+
+    private void addToIndex(String key, Location location) {
+        Location previous = this.index.put(key, location);
+        if (previous != null) {
+            this.liveBytes -= previous.length;
+        }
+        this.liveBytes += location.length;
+    }
+
+    private boolean shouldCompact() {
+        long deadBytes = this.fileBytes - HEADER_LENGTH - this.liveBytes;
+        return deadBytes > this.liveBytes && deadBytes > MIN_COMPACTION_BYTES;
+    }
+
+    /**
+     * Copies the live records into a new file, which then replaces the log.
+     * Until the rename, a crash leaves the old log as it was.
+     */
+    private void compactLocked() throws IOException {
+        Path compactPath = this.path.resolveSibling(this.path.getFileName() + ".compact");
+        FileChannel compactChannel = FileChannel.open(compactPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Map<String, Location> compactIndex = new HashMap<>();
+        try {
+            compactChannel.write(ByteBuffer.wrap(header()));
+            long position = HEADER_LENGTH;
+            for (Map.Entry<String, Location> entry: this.index.entrySet()) {
+                Location location = entry.getValue();
+                long copied = 0;
+                while (copied < location.length) {
+                    copied += this.channel.transferTo(location.offset + copied, location.length - copied, compactChannel);
+                }
+                compactIndex.put(entry.getKey(), new Location(position, location.length));
+                position += location.length;
+            }
+            compactChannel.force(true);
+            Files.move(compactPath, this.path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            compactChannel.close();
+            Files.deleteIfExists(compactPath);
+            throw e;
+        }
+
+        this.channel.close();
+        this.channel = compactChannel;
+        this.index.clear();
+        this.index.putAll(compactIndex);
+        this.fileBytes = this.liveBytes + HEADER_LENGTH;
+        this.isDirty.set(false);
+        this.compactions++;
+        LOGGER.info("Compacted {} to {} puzzles, {} bytes", this.path, this.index.size(), this.fileBytes);
+    }
+
+    private void sync() {
+        if (!this.isDirty.getAndSet(false)) {
+            return;
+        }
+        this.lock.readLock().lock();
+        try {
+            this.channel.force(false);
+        } catch (IOException e) {
+            LOGGER.warn("Could not flush {}", this.path, e);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private static ByteBuffer encode(String key, boolean[][] solution) {
+        int rowCount = solution == null ? 0 : solution.length;
+        int colCount = solution == null ? 0 : solution[0].length;
+        int length = MIN_PAYLOAD_LENGTH + (rowCount * colCount + 7) / 8;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + length);
+        record.putInt(length).putInt(0).put(fromHex(key)).putInt(rowCount).putInt(colCount);
+        int bits = 0;
+        int bitCount = 0;
+        for (int i = 0; i < rowCount; i++) {
+            for (int j = 0; j < colCount; j++) {
+                if (solution[i][j]) {
+                    bits |= 1 << bitCount;
+                }
+                if (++bitCount == 8) {
+                    record.put((byte) bits);
+                    bits = 0;
+                    bitCount = 0;
+                }
+            }
+        }
+        if (bitCount > 0) {
+            record.put((byte) bits);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER_LENGTH, length);
+        record.putInt(4, (int) crc.getValue());
+        return record.flip();
+    }
+
+    private static boolean[][] decodeSolution(ByteBuffer record) throws IOException {
+        int rowCount = record.getInt();
+        int colCount = record.getInt();
+        if (rowCount == 0 && colCount == 0) {
+            return null;
+        }
+        if (rowCount <= 0 || colCount <= 0 || ((long) rowCount * colCount + 7) / 8 != record.remaining()) {
+            throw new IOException("Record has an invalid size");
+        }
+        boolean[][] solution = new boolean[rowCount][colCount];
+        int bits = 0;
+        int bitCount = 0;
+        for (boolean[] row: solution) {
+            for (int j = 0; j < colCount; j++) {
+                if (bitCount == 0) {
+                    bits = record.get();
+                    bitCount = 8;
+                }
+                row[j] = (bits & 1) != 0;
+                bits >>>= 1;
+                bitCount--;
+            }
+        }
+        return solution;
+    }
+
+    /**
+     * Checks the CRC32 of the payload that follows it, from the position of the checksum in the record.
+     */
+    private static boolean isChecksumValid(ByteBuffer record, int length) {
+        int checksum = record.getInt();
+        ByteBuffer payload = record.slice();
+        payload.limit(length);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue() == checksum;
+    }
+
+    private static byte[] header() {
+        byte[] header = Arrays.copyOf(MAGIC, HEADER_LENGTH);
+        header[MAGIC.length] = VERSION;
+        return header;
+    }
+
+    private static byte[] fromHex(String key) {
+        byte[] bytes = new byte[KEY_LENGTH];
+        for (int i = 0; i < KEY_LENGTH; i++) {
+            bytes[i] = (byte) Integer.parseInt(key, 2 * i, 2 * i + 2, 16);
+        }
+        return bytes;
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[2 * bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = Character.forDigit((bytes[i] >>> 4) & 0xf, 16);
+            chars[2 * i + 1] = Character.forDigit(bytes[i] & 0xf, 16);
+        }
+        return new String(chars);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!this.isEnabled()) {
+            return;
+        }
+        if (this.syncExecutor != null) {
+            this.syncExecutor.shutdownNow();
+        }
+        this.lock.writeLock().lock();
+        try {
+            this.channel.force(false);
+            this.channel.close();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+}
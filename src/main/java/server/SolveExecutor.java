@@ -0,0 +1,111 @@
+package server;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs solves off the request threads, on a pool sized to the processors,
+ * so that a burst of requests waits for the CPU instead of holding the server's threads
+ * or running more solves at once than there are cores.
+ * Once the queue in front of the pool is full as well, further solves are refused,
+ * and the request is answered with 429 Too Many Requests.
+ * With {@code nonogram.solve.virtual-threads}, the pool runs on virtual threads, on a JDK that has them.
+ */
+@Component
+public class SolveExecutor implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SolveExecutor.class);
+
+    private final ThreadPoolExecutor executor;
+    private final Counter rejections;
+
+    /**
+     * @param threadCount The number of puzzles solved at once, 0 for one per processor.
+     * @param queueCapacity The number of puzzles that may wait for a thread.
+     */
+    public SolveExecutor(@Value("${nonogram.solve.threads:0}") int threadCount,
+                         @Value("${nonogram.solve.queue-capacity:32}") int queueCapacity,
+                         @Value("${nonogram.solve.virtual-threads:false}") boolean isVirtual,
+                         MeterRegistry registry) {
+        if (threadCount <= 0) {
+            threadCount = Runtime.getRuntime().availableProcessors();
+        }
+        BlockingQueue<Runnable> queue = queueCapacity > 0
+                ? new ArrayBlockingQueue<>(queueCapacity)
+                : new SynchronousQueue<>();
+        this.executor = new ThreadPoolExecutor(threadCount, threadCount, 0, TimeUnit.MILLISECONDS, queue,
+                createThreadFactory(isVirtual));
+        new ExecutorServiceMetrics(this.executor, "solver", Tags.empty()).bindTo(registry);
+        this.rejections = Counter.builder("nonogram.solve.rejected")
+                .description("Solves refused because the solver was full")
+                .register(registry);
+    }
+
+    /**
+     * Queues a solve.
+     * @return The result of the solve, or its exception.
+     * @throws RejectedExecutionException If the queue is full.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            this.executor.execute(() -> {
+                try {
+                    future.complete(task.call());
+                } catch (Throwable e) {
+                    // errors too, such as running out of memory, as the request would wait on the future forever
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.rejections.increment();
+            throw e;
+        }
+        return future;
+    }
+
+    /**
+     * Names the threads of the pool, and makes them virtual if asked to and the JDK has them,
+     * through reflection, as this still compiles for Java 11.
+     */
+    private static ThreadFactory createThreadFactory(boolean isVirtual) {
+        if (isVirtual) {
+            try {
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "solver-", 0L);
+                return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+                LOGGER.warn("Virtual threads are not available on Java {}, solving on platform threads",
+                        Runtime.version().feature());
+            }
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "solver-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public void close() {
+        this.executor.shutdownNow();
+    }
+}
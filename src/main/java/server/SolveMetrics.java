@@ -0,0 +1,67 @@
+package server;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import solver.SolveResult;
+import solver.SolverStats;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes how long solves take, how many nodes they search and how many constraint updates they make or skip,
+ * as histograms tagged with the kind of solve and its outcome, through the actuator at {@code /actuator/prometheus}.
+ */
+@Component
+public class SolveMetrics {
+    private final MeterRegistry registry;
+
+    public SolveMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * @param kind What the solve was for, such as {@code solve}, {@code stream} or {@code count}.
+     */
+    public void record(String kind, SolveResult result) {
+        String outcome = result.getOutcome().name().toLowerCase(Locale.ROOT);
+        SolverStats stats = result.getStats();
+        Timer.builder("nonogram.solve.latency")
+                .description("Time to build the board and search it")
+                .tag("kind", kind)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(this.registry)
+                .record(stats.getConstructionNanos() + stats.getSearchNanos(), TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("nonogram.solve.nodes")
+                .description("Candidates tried by the search")
+                .baseUnit("nodes")
+                .tag("kind", kind)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(this.registry)
+                .record(result.getNodeCount());
+        DistributionSummary.builder("nonogram.solve.backtracks")
+                .description("Candidates undone by the search")
+                .tag("kind", kind)
+                .tag("outcome", outcome)
+                .register(this.registry)
+                .record(stats.getBacktrackCount());
+        DistributionSummary.builder("nonogram.solve.updates")
+                .description("Crossing constraints updated, or skipped as their cell was already decided")
+                .tag("kind", kind)
+                .tag("outcome", outcome)
+                .tag("result", "applied")
+                .register(this.registry)
+                .record(stats.getConstraintUpdateCount());
+        DistributionSummary.builder("nonogram.solve.updates")
+                .description("Crossing constraints updated, or skipped as their cell was already decided")
+                .tag("kind", kind)
+                .tag("outcome", outcome)
+                .tag("result", "skipped")
+                .register(this.registry)
+                .record(stats.getSkippedUpdateCount());
+    }
+}
@@ -0,0 +1,75 @@
+package server;
+
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Holds back the writing of a {@link ResponseBodyEmitter} until Spring has set it up on the response.
+ * Until then, the emitter keeps what is sent to it in memory, with nothing to hold the writer back.
+ * The emitter is set up once the request has gone async, which {@link Interceptor} passes on,
+ * and if the request ends without going async, the response is never going to be written.
+ */
+class StreamStart {
+    /**
+     * Tells the {@link StreamStart} of a request, if it has one, once its handler has returned.
+     */
+    static class Interceptor implements AsyncHandlerInterceptor {
+        @Override
+        public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                                   Object handler) {
+            StreamStart start = (StreamStart) request.getAttribute(ATTRIBUTE);
+            if (start != null) {
+                start.finish(true);
+            }
+        }
+
+        @Override
+        public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                    Exception exception) {
+            StreamStart start = (StreamStart) request.getAttribute(ATTRIBUTE);
+            if (start != null) {
+                start.finish(false);
+            }
+        }
+    }
+
+    private static final String ATTRIBUTE = StreamStart.class.getName();
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private volatile boolean isStarted = false;
+
+    private StreamStart() {
+    }
+
+    /**
+     * Creates the start of the response of a request, for its handler to return an emitter.
+     */
+    static StreamStart of(HttpServletRequest request) {
+        StreamStart start = new StreamStart();
+        request.setAttribute(ATTRIBUTE, start);
+        return start;
+    }
+
+    /**
+     * Waits until the emitter is set up.
+     * @return {@code false} if the response is never going to be written.
+     */
+    boolean await() throws InterruptedException {
+        this.latch.await();
+        return this.isStarted;
+    }
+
+    /**
+     * Only the first call counts, as the request also completes once it is done being async.
+     */
+    private synchronized void finish(boolean isStarted) {
+        if (this.latch.getCount() > 0) {
+            this.isStarted = isStarted;
+            this.latch.countDown();
+        }
+    }
+}
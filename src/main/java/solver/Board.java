@@ -1,20 +1,235 @@
 package solver;
 
 import solver.exceptions.InvalidConstraintException;
+import solver.exceptions.TooManyCombinationsException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 /**
  * Notes on the rows and cols:
  * {@code 0} means not decided.
  * {@code 1} means not chosen (crossed).
  * {@code 2} means chosen.
+ * Each row and column is kept as a packed {@link Line},
+ * the same form the constraints check their combinations against.
+ * Lines are identified by a single id in the propagation queue and the trails,
+ * with row {@code i} being {@code i} and column {@code j} being {@code rowCount + j}.
+ * The search splits the lines with undecided cells into components that cross at no undecided cell,
+ * and solves each on its own, as deciding cells on one cannot affect another.
+ * The decided cells of each line are summed up by a Zobrist hash, kept up to date as cells change,
+ * to look up components in the transposition table.
  */
 public class Board {
-    private final int[][] rows;
-    private final int[][] cols;
-    private final Constraint[] rowConstraints;
-    private final Constraint[] colConstraints;
+    /**
+     * Which {@link LineConstraint} implementation to use for the rows and columns.
+     * {@code AUTO} lists the combinations of a line unless its clue has more than
+     * {@link #ENUMERATION_LIMIT} of them on an empty line, in which case they are counted lazily.
+     * {@code ENUMERATED} lists them unless there are more than {@link CombinationTable#MAX_SIZE},
+     * as many as a table may hold.
+     */
+    public enum ConstraintType {
+        AUTO,
+        ENUMERATED,
+        LAZY,
+    }
+
+    /**
+     * Explores one branch of a parallel search, on its own copy of the board.
+     * While a task still has a share of more than one task to hand out,
+     * it splits into one subtask per candidate of its best line, dividing its share among them.
+     * Otherwise, it searches the rest of its branch sequentially.
+     */
+    private static class SolveTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Board board;
+        private final int share;
+        private final AtomicReference<boolean[][]> solution;
+
+        public SolveTask(Board board, int share, AtomicReference<boolean[][]> solution) {
+            this.board = board;
+            this.share = share;
+            this.solution = solution;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.board.budget.isStopped()) {
+                return;
+            }
+            if (this.board.undecidedCount == 0 || this.share <= 1) {
+                if (this.board.searchCopy() && this.solution.compareAndSet(null, this.board.toSolutionBoard(true))) {
+                    this.board.budget.stop(SolveOutcome.SOLVED);
+                }
+                return;
+            }
+
+            int lineId = this.board.findBestLine();
+            LineConstraint constraint = this.board.getConstraint(lineId);
+            constraint.resolve();
+            constraint.startPossibilities(this.board.candidateOrder);
+            int childShare = Math.max(1, this.share / constraint.possibilityCount());
+            List<SolveTask> subtasks = new ArrayList<>();
+            Line candidate = lineId < this.board.rows.length ? this.board.rowCandidate : this.board.colCandidate;
+            while (constraint.hasNextPossibility()) {
+                constraint.nextPossibility(candidate);
+                if (!this.board.budget.tryEnterNode()) {
+                    break;
+                }
+                Board child = new Board(this.board);
+                child.depth++;
+                child.maxDepth = child.depth;
+                if (child.applyCandidate(lineId, candidate)) {
+                    subtasks.add(new SolveTask(child, childShare, this.solution));
+                } else {
+                    this.board.addCounters(child);
+                    this.board.backtrackCount++;
+                }
+            }
+            // the children have their own copies of the line, and the board is left as it was, the root one included
+            constraint.unresolve();
+            invokeAll(subtasks);
+            for (SolveTask subtask: subtasks) {
+                this.board.addCounters(subtask.board);
+            }
+        }
+    }
+
+    /**
+     * One level of the search: a component of lines, the branch chosen on it,
+     * how many candidates of the branch were tried, and when the last one propagated without a contradiction,
+     * the components it split the rest into, and how many of them are solved.
+     * The bottom frame has no branch, and only solves the components that propagation left.
+     */
+    private static class SearchFrame {
+        private int[] lineIds;
+        private long hash;
+        private long startNodeCount;
+        private int startSolutionCount;
+        /**
+         * A line id or a cell, as chosen by the {@link BranchingStrategy}, or {@code -1} for the bottom frame.
+         */
+        private int branch;
+        /**
+         * The number of candidates of the branch tried so far.
+         * The candidates of a line branch are walked by its constraint, which is resolved while the frame is on it.
+         */
+        private int cursor;
+        private int cellTrailMark;
+        private int constraintTrailMark;
+        /**
+         * {@code null} while no candidate is filled in.
+         */
+        private int[][] components;
+        private int componentIndex;
+    }
+
+    private static final int COMPONENT_FAILED = 0;
+    private static final int COMPONENT_SOLVED = 1;
+    private static final int COMPONENT_ENTERED = 2;
+    private static final String SNAPSHOT_MISMATCH = "The snapshot is not of a search of this puzzle with these options";
+
+    private static final int ENUMERATION_LIMIT = 10000;
+    private static final int TASKS_PER_THREAD = 16;
+    private static final long ZOBRIST_SEED = 0x5DEECE66DL;
+
+    private final Line[] rows;
+    private final Line[] cols;
+    private final LineConstraint[] rowConstraints;
+    private final LineConstraint[] colConstraints;
+    private final ConstraintType constraintType;
+    private final Line commonRowCells;
+    private final Line commonColCells;
+    /**
+     * Where the candidate combinations of a branch line are written, before its cells are filled in from them.
+     */
+    private final Line rowCandidate;
+    private final Line colCandidate;
+    private int undecidedCount;
+
+    /**
+     * Random keys shared by all copies of the board: one per line, then two per cell for each of the rows and
+     * the columns, for the cell being crossed then chosen.
+     */
+    private final long[] zobristKeys;
+    private final long[] lineHashes;
+    private final int[] undecidedLineCounts;
+
+    /**
+     * The lines that still have undecided cells, with the one that has the fewest combinations on top.
+     */
+    private final LinePriorityQueue linesByPossibilityCount;
+
+    private final int[] propagationQueue;
+    private final boolean[] isQueued;
+    private int queueStart = 0;
+    private int queueSize = 0;
+
+    private int[] cellTrail = new int[64];
+    private int cellTrailSize = 0;
+    private int[] constraintTrail = new int[64];
+    private int constraintTrailSize = 0;
+
+    /**
+     * Counters of the current solve, for {@link SolverStats}.
+     * Copies of the board count on their own, and are added up once their task is done.
+     */
+    private long backtrackCount = 0;
+    private long constraintUpdateCount = 0;
+    private long skippedUpdateCount = 0;
+    private long eliminatedCombinationCount = 0;
+    private int depth = 0;
+    private int maxDepth = 0;
+    private final int[] initialPossibilityCounts;
+    private final long constructionNanos;
+    private long searchStartNanos = 0;
+
+    /**
+     * The limits of the current solve, shared by all copies of the board.
+     * It is also stopped once any branch of a parallel search finds a solution.
+     */
+    private SolveBudget budget = new SolveBudget(SolveOptions.DEFAULT);
+
+    /**
+     * The search stops once it has found this many solutions, and otherwise backtracks from each one.
+     */
+    private int solutionLimit = 1;
+    private int solutionCount = 0;
+    private boolean[][] firstSolution = null;
+
+    /**
+     * The components known to have no solution, shared by all copies of the board.
+     * Only set while searching.
+     */
+    private TranspositionTable transpositionTable = null;
+
+    private BranchingStrategy branchingStrategy = BranchingStrategy.FEWEST_COMBINATIONS;
+    private CandidateOrder candidateOrder = CandidateOrder.IN_ORDER;
+
+    /**
+     * Set while solving with delta steps, to be told of every cell that changes.
+     */
+    private DeltaStepEncoder deltaStepEncoder;
+
+    /**
+     * The frames of the search, kept here instead of on the thread's stack, from the bottom frame
+     * to the one on the deepest component. Frames are reused as the search goes up and down.
+     */
+    private SearchFrame[] searchStack = new SearchFrame[16];
+    private int searchStackSize = 0;
+    private boolean isSearchSolved = false;
+    private Consumer<Step> searchConsumer = null;
+    private volatile boolean isPauseRequested = false;
 
     /**
      * Instantiates a new puzzle.
@@ -27,6 +242,15 @@ public class Board {
      */
     public Board(boolean[][] cells, int[][] rowConstraints, int[][] colConstraints)
             throws InvalidConstraintException {
+        this(cells, rowConstraints, colConstraints, ConstraintType.AUTO);
+    }
+
+    /**
+     * Instantiates a new puzzle, with the given kind of constraints on the rows and columns.
+     */
+    public Board(boolean[][] cells, int[][] rowConstraints, int[][] colConstraints, ConstraintType constraintType)
+            throws InvalidConstraintException {
+        long start = System.nanoTime();
         int rowCount = cells.length;
         int colCount = cells[0].length;
         this.rows = this.toRows(cells);
@@ -35,32 +259,155 @@ public class Board {
         assert rowConstraints.length == rowCount;
         assert colConstraints.length == colCount;
 
-        this.rowConstraints = new Constraint[rowCount];
+        this.rowConstraints = new LineConstraint[rowCount];
         for (int i = 0; i < rowCount; i++) {
-            this.rowConstraints[i] = new Constraint(rowConstraints[i], this.rows[i]);
+            this.rowConstraints[i] = this.createConstraint(rowConstraints[i], this.rows[i], constraintType);
         }
 
-        this.colConstraints = new Constraint[colCount];
+        this.colConstraints = new LineConstraint[colCount];
         for (int i = 0; i < colCount; i++) {
-            this.colConstraints[i] = new Constraint(colConstraints[i], this.cols[i]);
+            this.colConstraints[i] = this.createConstraint(colConstraints[i], this.cols[i], constraintType);
+        }
+        this.constraintType = constraintType;
+
+        this.commonRowCells = new Line(colCount);
+        this.commonColCells = new Line(rowCount);
+        this.rowCandidate = new Line(colCount);
+        this.colCandidate = new Line(rowCount);
+        this.propagationQueue = new int[rowCount + colCount];
+        this.isQueued = new boolean[rowCount + colCount];
+
+        SplittableRandom random = new SplittableRandom(ZOBRIST_SEED);
+        this.zobristKeys = new long[rowCount + colCount + 4 * rowCount * colCount];
+        for (int k = 0; k < this.zobristKeys.length; k++) {
+            this.zobristKeys[k] = random.nextLong();
+        }
+        this.lineHashes = new long[rowCount + colCount];
+        this.undecidedLineCounts = new int[rowCount + colCount];
+        for (int i = 0; i < rowCount; i++) {
+            for (int j = 0; j < colCount; j++) {
+                int value = this.rows[i].get(j);
+                if (value == 0) {
+                    this.undecidedCount++;
+                    this.undecidedLineCounts[i]++;
+                    this.undecidedLineCounts[rowCount + j]++;
+                } else {
+                    this.toggleCellHash(i, j, value);
+                }
+            }
+        }
+        this.linesByPossibilityCount = this.createLineQueue();
+        this.initialPossibilityCounts = new int[rowCount + colCount];
+        for (int lineId = 0; lineId < this.initialPossibilityCounts.length; lineId++) {
+            this.initialPossibilityCounts[lineId] = this.getConstraint(lineId).possibilityCount();
         }
+        this.constructionNanos = System.nanoTime() - start;
     }
 
-    private int[][] toRows(boolean[][] cells) {
-        int[][] rows = new int[cells.length][cells[0].length];
+    /**
+     * Checks that every clue fits in its line, which is what the constructor checks of the clues,
+     * without building any of the constraints.
+     * @throws InvalidConstraintException If some clue does not fit in its line.
+     */
+    public static void checkConstraints(boolean[][] cells, int[][] rowConstraints, int[][] colConstraints)
+            throws InvalidConstraintException {
+        for (int[] numbers: rowConstraints) {
+            if (CombinationTable.count(numbers, cells[0].length) == 0) {
+                throw new InvalidConstraintException();
+            }
+        }
+        for (int[] numbers: colConstraints) {
+            if (CombinationTable.count(numbers, cells.length) == 0) {
+                throw new InvalidConstraintException();
+            }
+        }
+    }
+
+    private Board(Board board) {
+        this.rows = new Line[board.rows.length];
+        this.rowConstraints = new LineConstraint[board.rows.length];
+        for (int i = 0; i < board.rows.length; i++) {
+            this.rows[i] = board.rows[i].copy();
+            this.rowConstraints[i] = board.rowConstraints[i].copy(this.rows[i]);
+        }
+        this.cols = new Line[board.cols.length];
+        this.colConstraints = new LineConstraint[board.cols.length];
+        for (int i = 0; i < board.cols.length; i++) {
+            this.cols[i] = board.cols[i].copy();
+            this.colConstraints[i] = board.colConstraints[i].copy(this.cols[i]);
+        }
+        this.constraintType = board.constraintType;
+
+        this.commonRowCells = new Line(this.cols.length);
+        this.commonColCells = new Line(this.rows.length);
+        this.rowCandidate = new Line(this.cols.length);
+        this.colCandidate = new Line(this.rows.length);
+        this.propagationQueue = new int[this.rows.length + this.cols.length];
+        this.isQueued = new boolean[this.rows.length + this.cols.length];
+        this.undecidedCount = board.undecidedCount;
+        this.zobristKeys = board.zobristKeys;
+        this.lineHashes = board.lineHashes.clone();
+        this.undecidedLineCounts = board.undecidedLineCounts.clone();
+        this.linesByPossibilityCount = this.createLineQueue();
+        this.budget = board.budget;
+        this.transpositionTable = board.transpositionTable;
+        this.branchingStrategy = board.branchingStrategy;
+        this.candidateOrder = board.candidateOrder;
+        this.depth = board.depth;
+        this.initialPossibilityCounts = board.initialPossibilityCounts;
+        this.constructionNanos = board.constructionNanos;
+    }
+
+    private LinePriorityQueue createLineQueue() {
+        LineConstraint[] constraints = new LineConstraint[this.rows.length + this.cols.length];
+        System.arraycopy(this.rowConstraints, 0, constraints, 0, this.rows.length);
+        System.arraycopy(this.colConstraints, 0, constraints, this.rows.length, this.cols.length);
+        LinePriorityQueue queue = new LinePriorityQueue(constraints, this.rows.length);
+        for (int lineId = 0; lineId < constraints.length; lineId++) {
+            if (this.undecidedLineCounts[lineId] > 0) {
+                queue.add(lineId);
+            }
+        }
+        return queue;
+    }
+
+    private LineConstraint createConstraint(int[] numbers, Line cells, ConstraintType constraintType)
+            throws InvalidConstraintException {
+        switch (constraintType) {
+            case ENUMERATED:
+                try {
+                    return new Constraint(numbers, cells);
+                } catch (TooManyCombinationsException e) {
+                    return new LazyConstraint(numbers, cells);
+                }
+            case LAZY:
+                return new LazyConstraint(numbers, cells);
+            default:
+                // the table lists the combinations of the clue on the whole line, the crosses only rule some out
+                if (CombinationTable.count(numbers, cells.length()) > ENUMERATION_LIMIT) {
+                    return new LazyConstraint(numbers, cells);
+                }
+                return new Constraint(numbers, cells);
+        }
+    }
+
+    private Line[] toRows(boolean[][] cells) {
+        Line[] rows = new Line[cells.length];
         for (int i = 0; i < cells.length; i++) {
-            for (int j = 0; j < cells.length; j++) {
-                rows[i][j] = cells[i][j] ? 1 : 0;
+            rows[i] = new Line(cells[0].length);
+            for (int j = 0; j < cells[0].length; j++) {
+                rows[i].set(j, cells[i][j] ? 1 : 0);
             }
         }
         return rows;
     }
 
-    private int[][] toCols(boolean[][] cells) {
-        int[][] cols = new int[cells[0].length][cells.length];
+    private Line[] toCols(boolean[][] cells) {
+        Line[] cols = new Line[cells[0].length];
         for (int i = 0; i < cells[0].length; i++) {
+            cols[i] = new Line(cells.length);
             for (int j = 0; j < cells.length; j++) {
-                cols[i][j] = cells[j][i] ? 1 : 0;
+                cols[i].set(j, cells[j][i] ? 1 : 0);
             }
         }
         return cols;
@@ -72,208 +419,1033 @@ public class Board {
      *         and {@code false} meaning the cell is not filled.
      */
     public boolean[][] solve() {
-        boolean isSolved = this.solve(this.rowConstraints.length + this.colConstraints.length, null);
-        return this.toSolutionBoard(isSolved);
+        return this.solve(null);
     }
 
     public boolean[][] solve(Consumer<Step> consumer) {
-        boolean isSolved = this.solve(this.rowConstraints.length + this.colConstraints.length, consumer);
-        return this.toSolutionBoard(isSolved);
+        return this.solve(consumer, SolveOptions.DEFAULT).getSolution();
     }
 
-    private boolean solve(int unsolvedCount, Consumer<Step> consumer) {
-        if (unsolvedCount == 0) {
-            return true;
+    /**
+     * Finds a solution, giving the steps as {@link DeltaStep}s that only carry the lines changed since the
+     * previous step, with a keyframe of the whole board every {@code keyframeInterval} steps.
+     */
+    public boolean[][] solve(Consumer<Step> consumer, int keyframeInterval) {
+        return this.solve(consumer, SolveOptions.DEFAULT.withDeltaSteps(keyframeInterval)).getSolution();
+    }
+
+    /**
+     * Finds a solution within the limits of the options, or counts the solutions up to their solution limit.
+     * @param consumer Takes each step, or {@code null} to not produce steps.
+     */
+    public SolveResult solve(Consumer<Step> consumer, SolveOptions options) {
+        Search search = this.startSearch(consumer, options);
+        search.run();
+        return search.getResult();
+    }
+
+    /**
+     * Starts a search like {@link #solve(Consumer, SolveOptions)}, which only runs on {@link Search#run()},
+     * and can be paused between two nodes, and snapshotted to be resumed later.
+     * Propagation from the clues is done before this returns.
+     */
+    public Search startSearch(Consumer<Step> consumer, SolveOptions options) {
+        this.beginSearch(consumer, options, 0);
+        try {
+            if (this.propagateAll(consumer)) {
+                this.transpositionTable = this.createTranspositionTable(options);
+                this.pushBottomFrame();
+            }
+        } catch (RuntimeException | Error e) {
+            this.endSearch();
+            throw e;
         }
+        return new Search(this);
+    }
 
-        int bestRowConstraintIndex = this.findBestRowConstraint();
-        int bestColConstraintIndex = this.findBestColConstraint();
-        assert bestRowConstraintIndex != -1 || bestColConstraintIndex != -1;
+    /**
+     * Resumes a search from a snapshot of it, on a new board of the same puzzle and kind of constraints,
+     * with the same options.
+     * The search is brought back to where it was by filling in the candidates of its frames again,
+     * and then goes on like the original one would have, except that the transposition table starts out empty,
+     * and the time limit starts over.
+     * @throws IllegalArgumentException If the snapshot is not of a search of this puzzle with these options.
+     */
+    public Search resumeSearch(SearchSnapshot snapshot, Consumer<Step> consumer, SolveOptions options) {
+        if (snapshot.rowCount != this.rows.length || snapshot.colCount != this.cols.length
+                || snapshot.constraintType != this.constraintType
+                || snapshot.solutionLimit != options.getSolutionLimit()
+                || snapshot.candidateOrder != options.getCandidateOrder()) {
+            throw new IllegalArgumentException(SNAPSHOT_MISMATCH);
+        }
+        this.beginSearch(consumer, options, snapshot.nodeCount);
+        try {
+            this.replay(snapshot, options);
+        } catch (RuntimeException | Error e) {
+            this.endSearch();
+            throw e;
+        }
+        this.backtrackCount = snapshot.backtrackCount;
+        this.constraintUpdateCount = snapshot.constraintUpdateCount;
+        this.skippedUpdateCount = snapshot.skippedUpdateCount;
+        this.eliminatedCombinationCount = snapshot.eliminatedCombinationCount;
+        this.maxDepth = Math.max(this.maxDepth, snapshot.maxDepth);
+        this.solutionCount = snapshot.solutionCount;
+        this.firstSolution = snapshot.firstSolution;
+        this.searchStartNanos = System.nanoTime() - snapshot.searchNanos;
+        return new Search(this);
+    }
 
-        if (bestRowConstraintIndex == -1) {
-            return this.resolveCol(unsolvedCount, bestColConstraintIndex, consumer);
-        } else if (bestColConstraintIndex == -1) {
-            return this.resolveRow(unsolvedCount, bestRowConstraintIndex, consumer);
-        } else if (this.rowConstraints[bestRowConstraintIndex].possibilityCount() <
-                this.colConstraints[bestColConstraintIndex].possibilityCount()) {
-            return this.resolveRow(unsolvedCount, bestRowConstraintIndex, consumer);
-        } else {
-            return this.resolveCol(unsolvedCount, bestColConstraintIndex, consumer);
+    private void beginSearch(Consumer<Step> consumer, SolveOptions options, long nodeCount) {
+        this.startCounters();
+        this.budget = new SolveBudget(options, nodeCount);
+        this.solutionLimit = options.getSolutionLimit();
+        this.branchingStrategy = options.getBranchingStrategy();
+        this.candidateOrder = options.getCandidateOrder();
+        this.solutionCount = 0;
+        this.firstSolution = null;
+        this.searchConsumer = consumer;
+        this.searchStackSize = 0;
+        this.isSearchSolved = false;
+        this.isPauseRequested = false;
+        if (options.getKeyframeInterval() > 0) {
+            this.deltaStepEncoder = new DeltaStepEncoder(this.rows, this.cols, options.getKeyframeInterval());
         }
     }
 
-    private int[][] cloneBoard() {
-        int[][] board = new int[this.rows.length][this.rows[0].length];
-        for (int i = 0; i < this.rows.length; i++) {
-            for (int j = 0; j < this.rows[0].length; j++) {
-                board[i][j] = this.rows[i][j];
+    /**
+     * Gives the result of a search whose frames are all done, and ends it.
+     */
+    SolveResult finishSearch() {
+        try {
+            if (this.isSearchSolved && !this.isCounting()) {
+                this.recordSolution();
             }
+            return this.toResult(this.firstSolution, this.solutionCount);
+        } finally {
+            this.endSearch();
         }
-        return board;
     }
 
-    private Step getStep(boolean isRow, int index) {
-        return new Step(this.cloneBoard(), isRow, index);
+    /**
+     * Clears what was only set for the search.
+     */
+    void endSearch() {
+        while (this.searchStackSize > 0) {
+            SearchFrame frame = this.searchStack[--this.searchStackSize];
+            frame.lineIds = null;
+            frame.components = null;
+        }
+        this.deltaStepEncoder = null;
+        this.searchConsumer = null;
+        this.isPauseRequested = false;
+        this.solutionLimit = 1;
+        this.transpositionTable = null;
+        this.branchingStrategy = BranchingStrategy.FEWEST_COMBINATIONS;
+        this.candidateOrder = CandidateOrder.IN_ORDER;
     }
 
-    private int findBestRowConstraint() {
-        int index = -1;
-        for (int i = 0; i < this.rowConstraints.length; i++) {
-            if (this.rowConstraints[i].isResolved()) {
-                continue;
-            }
-            if (index == -1 ||
-                    this.rowConstraints[i].possibilityCount() < this.rowConstraints[index].possibilityCount()) {
-                index = i;
+    void requestPause() {
+        this.isPauseRequested = true;
+    }
+
+    /**
+     * Reads how far the search has got, from any thread, without stopping it.
+     * The counters are read as the search updates them, so they may be slightly out of date.
+     */
+    SearchProgress getProgress() {
+        int resolvedLineCount = 0;
+        for (int count: this.undecidedLineCounts) {
+            if (count == 0) {
+                resolvedLineCount++;
             }
         }
-        return index;
+        return new SearchProgress(this.budget.getNodeCount(), resolvedLineCount, this.undecidedLineCounts.length,
+                this.depth);
     }
 
-    private int findBestColConstraint() {
-        int index = -1;
-        for (int i = 0; i < this.colConstraints.length; i++) {
-            if (this.colConstraints[i].isResolved()) {
-                continue;
+    /**
+     * Counts the solutions, stopping at {@code limit}.
+     * A limit of {@code 2} is enough to tell whether the solution is unique.
+     */
+    public int countSolutions(int limit) {
+        return this.solve(null, SolveOptions.DEFAULT.withSolutionLimit(limit)).getSolutionCount();
+    }
+
+    /**
+     * Finds a solution like {@link #solve()}, but splits the top of the search tree into tasks
+     * that run on a work-stealing pool, each on its own copy of the board.
+     * As soon as one branch finds a solution, all the other tasks stop.
+     * @param parallelism The number of threads to solve with.
+     */
+    public boolean[][] solveParallel(int parallelism) {
+        return this.solveParallel(parallelism, SolveOptions.DEFAULT).getSolution();
+    }
+
+    /**
+     * Finds a solution like {@link #solveParallel(int)}, within the limits of the options,
+     * which are shared by all the tasks.
+     * The solution limit and delta steps of the options are not used.
+     */
+    public SolveResult solveParallel(int parallelism, SolveOptions options) {
+        this.startCounters();
+        this.budget = new SolveBudget(options);
+        if (!this.propagateAll(null)) {
+            return this.toResult(null, 0);
+        }
+        AtomicReference<boolean[][]> solution = new AtomicReference<>();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        this.transpositionTable = this.createTranspositionTable(options);
+        this.branchingStrategy = options.getBranchingStrategy();
+        this.candidateOrder = options.getCandidateOrder();
+        try {
+            pool.invoke(new SolveTask(this, parallelism * TASKS_PER_THREAD, solution));
+            return this.toResult(solution.get(), solution.get() == null ? 0 : 1);
+        } finally {
+            pool.shutdownNow();
+            this.transpositionTable = null;
+            this.branchingStrategy = BranchingStrategy.FEWEST_COMBINATIONS;
+            this.candidateOrder = CandidateOrder.IN_ORDER;
+        }
+    }
+
+    /**
+     * Sizes the table for the search, unless propagation alone decided every cell.
+     */
+    private TranspositionTable createTranspositionTable(SolveOptions options) {
+        if (this.undecidedCount == 0 || options.getTranspositionTableSize() <= 0) {
+            return null;
+        }
+        return new TranspositionTable(options.getTranspositionTableSize());
+    }
+
+    private SolveResult toResult(boolean[][] solution, int solutionCount) {
+        SolveOutcome outcome;
+        if (this.budget.getStopReason() != null && this.budget.getStopReason() != SolveOutcome.SOLVED) {
+            outcome = this.budget.getStopReason();
+        } else if (solution != null) {
+            outcome = SolveOutcome.SOLVED;
+        } else {
+            outcome = SolveOutcome.UNSOLVABLE;
+        }
+        int[] initialRowPossibilityCounts = Arrays.copyOf(this.initialPossibilityCounts, this.rows.length);
+        int[] initialColPossibilityCounts = Arrays.copyOfRange(this.initialPossibilityCounts, this.rows.length,
+                this.initialPossibilityCounts.length);
+        SolverStats stats = new SolverStats(this.budget.getNodeCount(), this.backtrackCount,
+                this.constraintUpdateCount, this.skippedUpdateCount, this.eliminatedCombinationCount, this.maxDepth,
+                initialRowPossibilityCounts, initialColPossibilityCounts,
+                this.constructionNanos, System.nanoTime() - this.searchStartNanos, this.transpositionTable);
+        return new SolveResult(outcome, solution, this.budget.getNodeCount(), solutionCount, stats);
+    }
+
+    private void startCounters() {
+        this.backtrackCount = 0;
+        this.constraintUpdateCount = 0;
+        this.skippedUpdateCount = 0;
+        this.eliminatedCombinationCount = 0;
+        this.maxDepth = 0;
+        this.searchStartNanos = System.nanoTime();
+    }
+
+    private void addCounters(Board board) {
+        this.backtrackCount += board.backtrackCount;
+        this.constraintUpdateCount += board.constraintUpdateCount;
+        this.skippedUpdateCount += board.skippedUpdateCount;
+        this.eliminatedCombinationCount += board.eliminatedCombinationCount;
+        this.maxDepth = Math.max(this.maxDepth, board.maxDepth);
+    }
+
+    private boolean propagateAll(Consumer<Step> consumer) {
+        for (int i = 0; i < this.propagationQueue.length; i++) {
+            this.enqueue(i);
+        }
+        return this.propagate(consumer);
+    }
+
+    /**
+     * Runs the search from the frames on the stack until none are left, or a pause was asked for,
+     * in which case it stops between two nodes, and goes on from there the next time.
+     * Each frame fills in the candidates of its branch in turn, and after each one that propagates,
+     * searches the components of what is left one after another, as the cells decided on one never affect the others.
+     * The frame is solved once all of them are, and otherwise, the candidate is undone for the next one.
+     * When counting solutions, there is a single component, so that every combination of them is counted.
+     * @return {@code true} once the search is over, whether or not it solved the board.
+     */
+    boolean runSearch() {
+        while (this.searchStackSize > 0) {
+            if (this.isPauseRequested) {
+                this.isPauseRequested = false;
+                return false;
             }
-            if (index == -1 ||
-                    this.colConstraints[i].possibilityCount() < this.colConstraints[index].possibilityCount()) {
-                index = i;
+            SearchFrame frame = this.searchStack[this.searchStackSize - 1];
+            if (frame.components == null) {
+                if (!this.applyNextCandidate(frame)) {
+                    this.popFrame(false);
+                }
+            } else if (frame.componentIndex == frame.components.length) {
+                this.popFrame(true);
+            } else {
+                int status = this.enterComponent(frame.components[frame.componentIndex]);
+                if (status == COMPONENT_SOLVED) {
+                    frame.componentIndex++;
+                } else if (status == COMPONENT_FAILED) {
+                    this.rejectCandidate(frame);
+                }
             }
         }
-        return index;
+        return true;
+    }
+
+    /**
+     * Searches the components left on a copy of the board in a parallel solve, to the end.
+     */
+    private boolean searchCopy() {
+        this.pushBottomFrame();
+        this.runSearch();
+        return this.isSearchSolved;
     }
 
-    private boolean resolveCol(int unsolvedCount, int colIndex, Consumer<Step> consumer) {
-        int[] originalCol = this.cols[colIndex];
-        this.colConstraints[colIndex].resolve();
-        for (int[] colNumbers: this.colConstraints[colIndex].getPossibilities()) {
-            if (consumer != null) {
-                consumer.accept(this.getStep(false, colIndex));
+    /**
+     * Starts the search of a component of lines, which shares no undecided cell with any line outside of it.
+     * A component whose search failed is recorded in the transposition table, and skipped if it is reached again,
+     * which happens whenever the cells decided elsewhere leave it the same.
+     * @return {@link #COMPONENT_ENTERED} once a frame for the component is on the stack,
+     * or whether it is solved right away, which when counting solutions,
+     * is once the solution limit is reached, with the last solution on the board.
+     */
+    private int enterComponent(int[] lineIds) {
+        if (lineIds.length == 0) {
+            return !this.isCounting() || this.recordSolution() ? COMPONENT_SOLVED : COMPONENT_FAILED;
+        }
+        if (this.budget.isStopped()) {
+            return COMPONENT_FAILED;
+        }
+        long hash = this.transpositionTable == null ? 0 : this.getComponentHash(lineIds);
+        if (this.transpositionTable != null && this.transpositionTable.contains(hash)) {
+            return COMPONENT_FAILED;
+        }
+
+        this.depth++;
+        this.maxDepth = Math.max(this.maxDepth, this.depth);
+        SearchFrame frame = this.pushFrame();
+        frame.lineIds = lineIds;
+        frame.hash = hash;
+        frame.startNodeCount = this.budget.getNodeCount();
+        frame.startSolutionCount = this.solutionCount;
+        frame.branch = this.branchingStrategy.chooseBranch(this, lineIds);
+        frame.cursor = 0;
+        frame.components = null;
+        if (frame.branch < this.lineHashes.length) {
+            LineConstraint constraint = this.getConstraint(frame.branch);
+            constraint.resolve();
+            constraint.startPossibilities(this.candidateOrder);
+        }
+        return COMPONENT_ENTERED;
+    }
+
+    private void pushBottomFrame() {
+        SearchFrame frame = this.pushFrame();
+        frame.lineIds = this.getLineIds();
+        frame.hash = 0;
+        frame.startNodeCount = this.budget.getNodeCount();
+        frame.startSolutionCount = this.solutionCount;
+        frame.branch = -1;
+        frame.cursor = 1;
+        frame.cellTrailMark = this.cellTrailSize;
+        frame.constraintTrailMark = this.constraintTrailSize;
+        frame.components = this.findComponents(frame.lineIds);
+        frame.componentIndex = 0;
+    }
+
+    private SearchFrame pushFrame() {
+        if (this.searchStackSize == this.searchStack.length) {
+            this.searchStack = Arrays.copyOf(this.searchStack, this.searchStack.length * 2);
+        }
+        SearchFrame frame = this.searchStack[this.searchStackSize];
+        if (frame == null) {
+            frame = new SearchFrame();
+            this.searchStack[this.searchStackSize] = frame;
+        }
+        this.searchStackSize++;
+        return frame;
+    }
+
+    /**
+     * Takes the frame on top off the stack, and tells the frame below whether its component is solved.
+     * The line of the frame is no longer resolved either way, as its cells are only decided while the frame below
+     * keeps its candidate.
+     */
+    private void popFrame(boolean isSolved) {
+        SearchFrame frame = this.searchStack[--this.searchStackSize];
+        if (frame.branch >= 0) {
+            this.depth--;
+            if (frame.branch < this.lineHashes.length) {
+                this.getConstraint(frame.branch).unresolve();
             }
-            boolean isUpdated = this.updateCol(colIndex, colNumbers);
-            if (!isUpdated) {
-                continue;
+            if (!isSolved && this.transpositionTable != null
+                    && this.solutionCount == frame.startSolutionCount && !this.budget.isStopped()) {
+                this.transpositionTable.store(frame.hash, this.budget.getNodeCount() - frame.startNodeCount);
             }
-            if (consumer != null) {
-                consumer.accept(this.getStep(false, colIndex));
+        }
+        frame.lineIds = null;
+        frame.components = null;
+        if (this.searchStackSize == 0) {
+            this.isSearchSolved = isSolved;
+        } else if (isSolved) {
+            this.searchStack[this.searchStackSize - 1].componentIndex++;
+        } else {
+            this.rejectCandidate(this.searchStack[this.searchStackSize - 1]);
+        }
+    }
+
+    private boolean hasNextCandidate(SearchFrame frame) {
+        if (frame.branch < 0) {
+            return false;
+        }
+        if (frame.branch < this.lineHashes.length) {
+            return this.getConstraint(frame.branch).hasNextPossibility();
+        }
+        return frame.cursor < 2;
+    }
+
+    /**
+     * Fills in the candidates of the frame's branch in turn, until one propagates without a contradiction,
+     * and splits what is left of the component.
+     * @return {@code false} once the candidates or the budget run out.
+     */
+    private boolean applyNextCandidate(SearchFrame frame) {
+        while (this.hasNextCandidate(frame)) {
+            if (!this.budget.tryEnterNode()) {
+                return false;
             }
-            boolean isSolved = this.solve(unsolvedCount - 1, consumer);
-            if (isSolved) {
+            frame.cellTrailMark = this.cellTrailSize;
+            frame.constraintTrailMark = this.constraintTrailSize;
+            if (this.tryCandidate(frame, this.searchConsumer) && this.propagate(this.searchConsumer)) {
+                frame.components = this.findComponents(frame.lineIds);
+                frame.componentIndex = 0;
                 return true;
             }
-            this.undoRowConstraints();
+            this.rejectCandidate(frame);
         }
-        this.undoCol(colIndex, originalCol);
-        this.colConstraints[colIndex].unresolve();
         return false;
     }
 
-    private boolean updateCol(int colIndex, int[] colNumbers) {
-        this.cols[colIndex] = colNumbers;
-        boolean areAllConstraintsUpdated = true;
-        int i;
-        for (i = 0; i < this.rows.length; i++) {
-            this.rows[i][colIndex] = colNumbers[i];
-            this.rowConstraints[i].update(this.rows[i]);
-            if (this.rowConstraints[i].possibilityCount() == 0) {
-                areAllConstraintsUpdated = false;
-                break;
+    /**
+     * Fills in the next candidate of the frame's branch: a combination of its line,
+     * or its cell chosen, and then crossed.
+     * @return {@code false} if some line is left with no possible combination.
+     */
+    private boolean tryCandidate(SearchFrame frame, Consumer<Step> consumer) {
+        int lineCount = this.lineHashes.length;
+        if (frame.branch >= lineCount) {
+            int cellIndex = frame.branch - lineCount;
+            int rowIndex = cellIndex / this.cols.length;
+            boolean isDecided = this.decideCell(rowIndex, cellIndex % this.cols.length, 2 - frame.cursor++);
+            if (isDecided && consumer != null) {
+                consumer.accept(this.getStep(true, rowIndex));
             }
+            return isDecided;
         }
-        if (areAllConstraintsUpdated) {
-            return true;
+        boolean isRow = frame.branch < this.rows.length;
+        int index = isRow ? frame.branch : frame.branch - this.rows.length;
+        Line candidate = isRow ? this.rowCandidate : this.colCandidate;
+        this.getConstraint(frame.branch).nextPossibility(candidate);
+        frame.cursor++;
+        if (consumer != null) {
+            consumer.accept(this.getStep(isRow, index));
         }
+        boolean isUpdated = isRow ? this.updateRow(index, candidate) : this.updateCol(index, candidate);
+        if (isUpdated && consumer != null) {
+            consumer.accept(this.getStep(isRow, index));
+        }
+        return isUpdated;
+    }
 
-        for (int j = 0; j <= i; j++) {
-            this.rowConstraints[j].undo();
+    private void rejectCandidate(SearchFrame frame) {
+        if (frame.branch >= 0) {
+            this.backtrackCount++;
         }
-        return false;
+        this.undoTrails(frame.cellTrailMark, frame.constraintTrailMark);
+        frame.components = null;
     }
 
-    private void undoCol(int colIndex, int[] originalCol) {
-        this.cols[colIndex] = originalCol;
+    /**
+     * Captures the search while it is not running.
+     */
+    SearchSnapshot snapshotSearch() {
+        SearchSnapshot snapshot = new SearchSnapshot();
+        snapshot.rowCount = this.rows.length;
+        snapshot.colCount = this.cols.length;
+        snapshot.cells = new int[this.rows.length * this.cols.length];
         for (int i = 0; i < this.rows.length; i++) {
-            this.rows[i][colIndex] = originalCol[i];
+            for (int j = 0; j < this.cols.length; j++) {
+                snapshot.cells[i * this.cols.length + j] = this.rows[i].get(j);
+            }
         }
+        snapshot.constraintType = this.constraintType;
+        snapshot.solutionLimit = this.solutionLimit;
+        snapshot.candidateOrder = this.candidateOrder;
+        int frameCount = this.searchStackSize;
+        snapshot.branches = new int[frameCount];
+        snapshot.cursors = new int[frameCount];
+        snapshot.componentIndices = new int[frameCount];
+        snapshot.startNodeCounts = new long[frameCount];
+        snapshot.startSolutionCounts = new int[frameCount];
+        for (int k = 0; k < frameCount; k++) {
+            SearchFrame frame = this.searchStack[k];
+            snapshot.branches[k] = frame.branch;
+            snapshot.cursors[k] = frame.cursor;
+            snapshot.componentIndices[k] = frame.components == null ? -1 : frame.componentIndex;
+            snapshot.startNodeCounts[k] = frame.startNodeCount;
+            snapshot.startSolutionCounts[k] = frame.startSolutionCount;
+        }
+        snapshot.nodeCount = this.budget.getNodeCount();
+        snapshot.backtrackCount = this.backtrackCount;
+        snapshot.constraintUpdateCount = this.constraintUpdateCount;
+        snapshot.skippedUpdateCount = this.skippedUpdateCount;
+        snapshot.eliminatedCombinationCount = this.eliminatedCombinationCount;
+        snapshot.maxDepth = this.maxDepth;
+        snapshot.solutionCount = this.solutionCount;
+        snapshot.firstSolution = this.firstSolution;
+        snapshot.searchNanos = System.nanoTime() - this.searchStartNanos;
+        return snapshot;
     }
 
-    private void undoRowConstraints() {
-        for (Constraint constraint: this.rowConstraints) {
-            constraint.undo();
-            assert constraint.possibilityCount() > 0;
+    /**
+     * Rebuilds the frames of a snapshot on this board, from the bottom one up.
+     * Each frame fills in its last candidate again, unless it was between two of them,
+     * and the components it had already solved are filled in from the cells of the snapshot.
+     * As propagation, the components and the branch chosen on each depend only on the cells decided so far,
+     * the frames come out the same as in the search that was snapshotted.
+     */
+    private void replay(SearchSnapshot snapshot, SolveOptions options) {
+        int frameCount = snapshot.branches.length;
+        if (this.propagateAll(null) != (frameCount > 0)) {
+            throw new IllegalArgumentException(SNAPSHOT_MISMATCH);
+        }
+        if (frameCount == 0) {
+            return;
+        }
+        this.transpositionTable = this.createTranspositionTable(options);
+        this.pushBottomFrame();
+        for (int k = 0; k < frameCount; k++) {
+            SearchFrame frame = this.searchStack[k];
+            int componentIndex = snapshot.componentIndices[k];
+            if (frame.branch != snapshot.branches[k] || componentIndex < 0 && k != frameCount - 1) {
+                throw new IllegalArgumentException(SNAPSHOT_MISMATCH);
+            }
+            frame.startNodeCount = snapshot.startNodeCounts[k];
+            frame.startSolutionCount = snapshot.startSolutionCounts[k];
+            if (k == 0) {
+                frame.components = componentIndex < 0 ? null : frame.components;
+            } else {
+                int triedCount = componentIndex < 0 ? snapshot.cursors[k] : snapshot.cursors[k] - 1;
+                while (frame.cursor < triedCount && this.hasNextCandidate(frame)) {
+                    if (frame.branch < this.lineHashes.length) {
+                        this.getConstraint(frame.branch).nextPossibility(
+                                frame.branch < this.rows.length ? this.rowCandidate : this.colCandidate);
+                    }
+                    frame.cursor++;
+                }
+                if (frame.cursor != triedCount) {
+                    throw new IllegalArgumentException(SNAPSHOT_MISMATCH);
+                }
+                if (componentIndex >= 0) {
+                    frame.cellTrailMark = this.cellTrailSize;
+                    frame.constraintTrailMark = this.constraintTrailSize;
+                    if (!this.hasNextCandidate(frame) || !this.tryCandidate(frame, null) || !this.propagate(null)) {
+                        throw new IllegalArgumentException(SNAPSHOT_MISMATCH);
+                    }
+                    frame.components = this.findComponents(frame.lineIds);
+                }
+            }
+            if (componentIndex < 0) {
+                break;
+            }
+            if (componentIndex > frame.components.length) {
+                throw new IllegalArgumentException(SNAPSHOT_MISMATCH);
+            }
+            for (int c = 0; c < componentIndex; c++) {
+                this.restoreComponent(frame.components[c], snapshot.cells);
+            }
+            frame.componentIndex = componentIndex;
+            if (k + 1 < frameCount && (componentIndex == frame.components.length
+                    || this.enterComponent(frame.components[componentIndex]) != COMPONENT_ENTERED)) {
+                throw new IllegalArgumentException(SNAPSHOT_MISMATCH);
+            }
         }
     }
 
-    private boolean resolveRow(int unresolvedCount, int rowIndex, Consumer<Step> consumer) {
-        int[] originalRow = this.rows[rowIndex];
-        this.rowConstraints[rowIndex].resolve();
-        for (int[] rowNumbers: this.rowConstraints[rowIndex].getPossibilities()) {
-            if (consumer != null) {
-                consumer.accept(this.getStep(true, rowIndex));
+    /**
+     * Fills in the cells of a component that was solved before the snapshot.
+     */
+    private void restoreComponent(int[] lineIds, int[] cells) {
+        for (int lineId: lineIds) {
+            if (lineId >= this.rows.length) {
+                continue;
+            }
+            for (int j = 0; j < this.cols.length; j++) {
+                if (this.rows[lineId].get(j) != 0) {
+                    continue;
+                }
+                int value = cells[lineId * this.cols.length + j];
+                if (value == 0 || !this.decideCell(lineId, j, value)) {
+                    throw new IllegalArgumentException(SNAPSHOT_MISMATCH);
+                }
             }
-            boolean isUpdated = this.updateRow(rowIndex, rowNumbers);
-            if (!isUpdated) {
+        }
+        if (!this.propagate(null)) {
+            throw new IllegalArgumentException(SNAPSHOT_MISMATCH);
+        }
+    }
+
+    /**
+     * Splits the lines that still have undecided cells into components,
+     * where two lines are in the same component if they cross at an undecided cell.
+     * Each component lists its line with the fewest combinations first, see {@link #moveBestLineFirst(int[])}.
+     * @param lineIds The lines to split, which no other line with undecided cells crosses.
+     */
+    private int[][] findComponents(int[] lineIds) {
+        int[] activeLineIds = Arrays.stream(lineIds).filter(lineId -> this.undecidedLineCounts[lineId] > 0).toArray();
+        if (this.isCounting()) {
+            return new int[][] {this.moveBestLineFirst(activeLineIds)};
+        }
+        int[] parents = new int[this.lineHashes.length];
+        for (int lineId: activeLineIds) {
+            parents[lineId] = lineId;
+        }
+        for (int lineId: activeLineIds) {
+            if (lineId >= this.rows.length) {
                 continue;
             }
-            if (consumer != null) {
-                consumer.accept(this.getStep(true, rowIndex));
+            for (int j = 0; j < this.cols.length; j++) {
+                if (this.rows[lineId].get(j) == 0) {
+                    parents[findRoot(parents, lineId)] = findRoot(parents, this.rows.length + j);
+                }
             }
-            boolean isSolved = this.solve(unresolvedCount - 1, consumer);
-            if (isSolved) {
-                return true;
+        }
+
+        Map<Integer, List<Integer>> components = new LinkedHashMap<>();
+        for (int lineId: activeLineIds) {
+            components.computeIfAbsent(findRoot(parents, lineId), root -> new ArrayList<>()).add(lineId);
+        }
+        int[][] componentLineIds = new int[components.size()][];
+        int c = 0;
+        for (List<Integer> component: components.values()) {
+            componentLineIds[c++] = this.moveBestLineFirst(component.stream().mapToInt(Integer::intValue).toArray());
+        }
+        return componentLineIds;
+    }
+
+    /**
+     * Moves the line of a component with the fewest combinations to its front, keeping the others in order.
+     * The best line is picked here, once per component, rather than from a queue of the component's own
+     * kept up to date on every constraint update and undo: the lines of a component do not change
+     * from when it is split off to when its search starts, as the components searched before it
+     * share no undecided cell with it, so such a queue would be filled here anyway and only looked at once.
+     */
+    private int[] moveBestLineFirst(int[] lineIds) {
+        int bestIndex = 0;
+        for (int k = 1; k < lineIds.length; k++) {
+            if (this.linesByPossibilityCount.isBefore(lineIds[k], lineIds[bestIndex])) {
+                bestIndex = k;
             }
-            this.undoColConstraints();
         }
-        this.undoRow(rowIndex, originalRow);
-        this.rowConstraints[rowIndex].unresolve();
-        return false;
+        if (bestIndex > 0) {
+            int bestLineId = lineIds[bestIndex];
+            System.arraycopy(lineIds, 0, lineIds, 1, bestIndex);
+            lineIds[0] = bestLineId;
+        }
+        return lineIds;
     }
 
-    private boolean updateRow(int rowIndex, int[] rowNumbers) {
-        this.rows[rowIndex] = rowNumbers;
-        boolean areAllConstraintsUpdated = true;
-        int i;
-        for (i = 0; i < this.cols.length; i++) {
-            this.cols[i][rowIndex] = rowNumbers[i];
-            this.colConstraints[i].update(this.cols[i]);
-            if (this.colConstraints[i].possibilityCount() == 0) {
-                areAllConstraintsUpdated = false;
-                break;
+    private static int findRoot(int[] parents, int lineId) {
+        while (parents[lineId] != lineId) {
+            parents[lineId] = parents[parents[lineId]];
+            lineId = parents[lineId];
+        }
+        return lineId;
+    }
+
+    private int[] getLineIds() {
+        return IntStream.range(0, this.lineHashes.length).toArray();
+    }
+
+    /**
+     * Hashes a component with the cells on its lines.
+     * Whether the component can be solved only depends on these,
+     * so unlike the whole board, this repeats when different branches leave the component the same.
+     */
+    private long getComponentHash(int[] lineIds) {
+        long hash = 0;
+        for (int lineId: lineIds) {
+            hash ^= this.zobristKeys[lineId] ^ this.lineHashes[lineId];
+        }
+        return hash;
+    }
+
+    /**
+     * When counting solutions, the components of the board are not solved separately,
+     * and each complete board is recorded as it is reached.
+     */
+    private boolean isCounting() {
+        return this.solutionLimit > 1;
+    }
+
+    private boolean recordSolution() {
+        if (this.solutionCount == 0) {
+            this.firstSolution = this.toSolutionBoard(true);
+        }
+        this.solutionCount++;
+        return this.solutionCount >= this.solutionLimit;
+    }
+
+    /**
+     * Finds the line with undecided cells that has the fewest possible combinations, preferring columns on ties.
+     */
+    int findBestLine() {
+        return this.linesByPossibilityCount.peek();
+    }
+
+    /**
+     * Finds the line of a component with the fewest possible combinations, preferring columns on ties.
+     * This is the first line of the component, as {@link #findComponents(int[])} lists it first.
+     */
+    int findBestLine(int[] lineIds) {
+        return lineIds[0];
+    }
+
+    /**
+     * Finds the undecided cell of the best line of a component whose crossing line has the fewest combinations.
+     * @return The cell, as a branch of {@link BranchingStrategy}.
+     */
+    int findMostConstrainedCell(int[] lineIds) {
+        int lineId = this.findBestLine(lineIds);
+        boolean isRow = lineId < this.rows.length;
+        Line line = isRow ? this.rows[lineId] : this.cols[lineId - this.rows.length];
+        int bestIndex = -1;
+        int bestCount = 0;
+        for (int k = 0; k < line.length(); k++) {
+            if (line.get(k) != 0) {
+                continue;
+            }
+            int count = isRow ? this.colConstraints[k].possibilityCount() : this.rowConstraints[k].possibilityCount();
+            if (bestIndex == -1 || count < bestCount) {
+                bestIndex = k;
+                bestCount = count;
+            }
+        }
+        assert bestIndex != -1;
+        int cellIndex = isRow
+                ? lineId * this.cols.length + bestIndex
+                : bestIndex * this.cols.length + lineId - this.rows.length;
+        return this.rows.length + this.cols.length + cellIndex;
+    }
+
+    private LineConstraint getConstraint(int lineId) {
+        return lineId < this.rows.length
+                ? this.rowConstraints[lineId]
+                : this.colConstraints[lineId - this.rows.length];
+    }
+
+    /**
+     * Fills in a candidate for a resolved line and propagates from it.
+     * Only used on copies of the board that are thrown away if this fails.
+     */
+    private boolean applyCandidate(int lineId, Line candidate) {
+        boolean isUpdated = lineId < this.rows.length
+                ? this.updateRow(lineId, candidate)
+                : this.updateCol(lineId - this.rows.length, candidate);
+        return isUpdated && this.propagate(null);
+    }
+
+    private int[][] cloneBoard() {
+        int[][] board = new int[this.rows.length][];
+        for (int i = 0; i < this.rows.length; i++) {
+            board[i] = this.rows[i].toArray();
+        }
+        return board;
+    }
+
+    private Step getStep(boolean isRow, int index) {
+        if (this.deltaStepEncoder != null) {
+            return this.deltaStepEncoder.encode(isRow, index);
+        }
+        return new Step(this.cloneBoard(), isRow, index);
+    }
+
+    private void setCell(int rowIndex, int colIndex, int value) {
+        int original = this.rows[rowIndex].get(colIndex);
+        if (original == value) {
+            return;
+        }
+        int colId = this.rows.length + colIndex;
+        if (original == 0) {
+            this.undecidedCount--;
+            this.decrementUndecided(rowIndex);
+            this.decrementUndecided(colId);
+        } else {
+            this.toggleCellHash(rowIndex, colIndex, original);
+        }
+        if (value == 0) {
+            this.undecidedCount++;
+            this.incrementUndecided(rowIndex);
+            this.incrementUndecided(colId);
+        } else {
+            this.toggleCellHash(rowIndex, colIndex, value);
+        }
+        this.rows[rowIndex].set(colIndex, value);
+        this.cols[colIndex].set(rowIndex, value);
+        if (this.deltaStepEncoder != null) {
+            this.deltaStepEncoder.markChanged(rowIndex, colIndex);
+        }
+    }
+
+    private void decrementUndecided(int lineId) {
+        this.undecidedLineCounts[lineId]--;
+        if (this.undecidedLineCounts[lineId] == 0) {
+            this.linesByPossibilityCount.remove(lineId);
+        }
+    }
+
+    private void incrementUndecided(int lineId) {
+        this.undecidedLineCounts[lineId]++;
+        if (this.undecidedLineCounts[lineId] == 1) {
+            this.linesByPossibilityCount.add(lineId);
+        }
+    }
+
+    /**
+     * Adds a decided cell to, or takes it out of, the hashes of its row and its column.
+     */
+    private void toggleCellHash(int rowIndex, int colIndex, int value) {
+        int keyIndex = this.lineHashes.length + 4 * (rowIndex * this.cols.length + colIndex) + value - 1;
+        this.lineHashes[rowIndex] ^= this.zobristKeys[keyIndex];
+        this.lineHashes[this.rows.length + colIndex] ^= this.zobristKeys[keyIndex + 2];
+    }
+
+    private void enqueue(int lineId) {
+        if (this.isQueued[lineId]) {
+            return;
+        }
+        this.isQueued[lineId] = true;
+        int end = (this.queueStart + this.queueSize) % this.propagationQueue.length;
+        this.propagationQueue[end] = lineId;
+        this.queueSize++;
+    }
+
+    private int dequeue() {
+        int lineId = this.propagationQueue[this.queueStart];
+        this.isQueued[lineId] = false;
+        this.queueStart = (this.queueStart + 1) % this.propagationQueue.length;
+        this.queueSize--;
+        return lineId;
+    }
+
+    private void clearQueue() {
+        while (this.queueSize > 0) {
+            this.dequeue();
+        }
+    }
+
+    /**
+     * Repeatedly fills in the cells that all remaining combinations of a line agree on,
+     * until no queued line gives anything new.
+     * Every cell filled in and every constraint update is recorded on the trails,
+     * so that the caller can revert them with {@link #undoTrails(int, int)}.
+     * @return {@code false} if some line is left with no possible combination.
+     */
+    private boolean propagate(Consumer<Step> consumer) {
+        int rowCount = this.rows.length;
+        while (this.queueSize > 0) {
+            int lineId = this.dequeue();
+            boolean isConsistent = lineId < rowCount
+                    ? this.propagateRow(lineId, consumer)
+                    : this.propagateCol(lineId - rowCount, consumer);
+            if (!isConsistent) {
+                this.clearQueue();
+                return false;
             }
         }
-        if (areAllConstraintsUpdated) {
+        return true;
+    }
+
+    private boolean propagateRow(int rowIndex, Consumer<Step> consumer) {
+        if (this.rowConstraints[rowIndex].isResolved()) {
             return true;
         }
+        if (!this.rowConstraints[rowIndex].findCommonCells(this.commonRowCells)) {
+            return false;
+        }
+        boolean isChanged = false;
+        for (int j = 0; j < this.cols.length; j++) {
+            int value = this.commonRowCells.get(j);
+            if (value == 0 || this.rows[rowIndex].get(j) != 0) {
+                continue;
+            }
+            isChanged = true;
+            if (!this.decideCellFromRow(rowIndex, j, value)) {
+                return false;
+            }
+        }
+        if (isChanged && consumer != null) {
+            consumer.accept(this.getStep(true, rowIndex));
+        }
+        return true;
+    }
 
-        for (int j = 0; j <= i; j++) {
-            this.colConstraints[j].undo();
+    private boolean propagateCol(int colIndex, Consumer<Step> consumer) {
+        if (this.colConstraints[colIndex].isResolved()) {
+            return true;
         }
-        return false;
+        if (!this.colConstraints[colIndex].findCommonCells(this.commonColCells)) {
+            return false;
+        }
+        boolean isChanged = false;
+        for (int i = 0; i < this.rows.length; i++) {
+            int value = this.commonColCells.get(i);
+            if (value == 0 || this.cols[colIndex].get(i) != 0) {
+                continue;
+            }
+            isChanged = true;
+            if (!this.decideCellFromCol(i, colIndex, value)) {
+                return false;
+            }
+        }
+        if (isChanged && consumer != null) {
+            consumer.accept(this.getStep(false, colIndex));
+        }
+        return true;
     }
 
-    private void undoRow(int rowIndex, int[] originalRow) {
-        this.rows[rowIndex] = originalRow;
-        for (int i = 0; i < this.cols.length; i++) {
-            this.cols[i][rowIndex] = originalRow[i];
+    /**
+     * Decides an undecided cell of a row, and updates the column crossing it,
+     * recording both on the trails and queueing the column for propagation.
+     * @return {@code false} if the column is left with no possible combination.
+     */
+    private boolean decideCellFromRow(int rowIndex, int colIndex, int value) {
+        this.setCell(rowIndex, colIndex, value);
+        this.pushCell(rowIndex * this.cols.length + colIndex);
+        return this.updateConstraint(this.rows.length + colIndex);
+    }
+
+    /**
+     * Decides an undecided cell of a column, and updates the row crossing it,
+     * recording both on the trails and queueing the row for propagation.
+     * @return {@code false} if the row is left with no possible combination.
+     */
+    private boolean decideCellFromCol(int rowIndex, int colIndex, int value) {
+        this.setCell(rowIndex, colIndex, value);
+        this.pushCell(rowIndex * this.cols.length + colIndex);
+        return this.updateConstraint(rowIndex);
+    }
+
+    /**
+     * Decides an undecided cell on its own, and updates both lines crossing it.
+     * @return {@code false} if either line is left with no possible combination.
+     */
+    private boolean decideCell(int rowIndex, int colIndex, int value) {
+        this.setCell(rowIndex, colIndex, value);
+        this.pushCell(rowIndex * this.cols.length + colIndex);
+        return this.updateConstraint(rowIndex) && this.updateConstraint(this.rows.length + colIndex);
+    }
+
+    /**
+     * Updates the constraint of a line to its cells, recording it on the trail and queueing the line for propagation.
+     * @return {@code false} if the line is left with no possible combination.
+     */
+    private boolean updateConstraint(int lineId) {
+        boolean isRow = lineId < this.rows.length;
+        LineConstraint constraint = this.getConstraint(lineId);
+        int possibilityCount = constraint.possibilityCount();
+        constraint.update(isRow ? this.rows[lineId] : this.cols[lineId - this.rows.length]);
+        this.pushConstraint(lineId);
+        this.constraintUpdateCount++;
+        this.eliminatedCombinationCount += possibilityCount - constraint.possibilityCount();
+        this.linesByPossibilityCount.update(lineId);
+        if (constraint.possibilityCount() == 0) {
+            return false;
+        }
+        this.enqueue(lineId);
+        return true;
+    }
+
+    private void pushCell(int cellIndex) {
+        if (this.cellTrailSize == this.cellTrail.length) {
+            this.cellTrail = Arrays.copyOf(this.cellTrail, this.cellTrail.length * 2);
         }
+        this.cellTrail[this.cellTrailSize++] = cellIndex;
     }
 
-    private void undoColConstraints() {
-        for (Constraint constraint: this.colConstraints) {
-            constraint.undo();
-            assert constraint.possibilityCount() > 0;
+    private void pushConstraint(int lineId) {
+        if (this.constraintTrailSize == this.constraintTrail.length) {
+            this.constraintTrail = Arrays.copyOf(this.constraintTrail, this.constraintTrail.length * 2);
+        }
+        this.constraintTrail[this.constraintTrailSize++] = lineId;
+    }
+
+    /**
+     * Reverts every cell decided and every constraint updated since the trails were at the given sizes.
+     */
+    private void undoTrails(int cellTrailMark, int constraintTrailMark) {
+        this.clearQueue();
+        while (this.constraintTrailSize > constraintTrailMark) {
+            int lineId = this.constraintTrail[--this.constraintTrailSize];
+            this.getConstraint(lineId).undo();
+            this.linesByPossibilityCount.update(lineId);
+        }
+        while (this.cellTrailSize > cellTrailMark) {
+            int cellIndex = this.cellTrail[--this.cellTrailSize];
+            this.setCell(cellIndex / this.cols.length, cellIndex % this.cols.length, 0);
+        }
+    }
+
+    /**
+     * Fills in the undecided cells of a column from one of its combinations.
+     * Only the rows whose cell changed are updated, and queued for propagation.
+     * @return {@code false} if some row is left with no possible combination.
+     */
+    private boolean updateCol(int colIndex, Line colNumbers) {
+        for (int i = 0; i < this.rows.length; i++) {
+            if (this.cols[colIndex].get(i) != 0) {
+                assert this.cols[colIndex].get(i) == colNumbers.get(i);
+                this.skippedUpdateCount++;
+                continue;
+            }
+            if (!this.decideCellFromCol(i, colIndex, colNumbers.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fills in the undecided cells of a row from one of its combinations.
+     * Only the columns whose cell changed are updated, and queued for propagation.
+     * @return {@code false} if some column is left with no possible combination.
+     */
+    private boolean updateRow(int rowIndex, Line rowNumbers) {
+        for (int i = 0; i < this.cols.length; i++) {
+            if (this.rows[rowIndex].get(i) != 0) {
+                assert this.rows[rowIndex].get(i) == rowNumbers.get(i);
+                this.skippedUpdateCount++;
+                continue;
+            }
+            if (!this.decideCellFromRow(rowIndex, i, rowNumbers.get(i))) {
+                return false;
+            }
         }
+        return true;
     }
 
     private boolean[][] toSolutionBoard(boolean isSolved) {
         if (!isSolved) {
             return null;
         }
-        boolean[][] result = new boolean[this.rows.length][this.rows[0].length];
+        boolean[][] result = new boolean[this.rows.length][this.cols.length];
         for (int i = 0; i < this.rows.length; i++) {
-            for (int j = 0; j < this.rows[0].length; j++) {
-                int item = this.rows[i][j];
+            for (int j = 0; j < this.cols.length; j++) {
+                int item = this.rows[i].get(j);
                 assert item == 1 || item == 2;
                 result[i][j] = item == 2;
             }
@@ -0,0 +1,28 @@
+package solver;
+
+/**
+ * Chooses what the search branches on, once propagation has decided all it can.
+ * A branch is either a line, identified by its line id, whose combinations are tried in turn,
+ * or a cell, identified by {@code rowCount + colCount + rowIndex * colCount + colIndex},
+ * which is tried chosen and then crossed.
+ */
+public interface BranchingStrategy {
+    /**
+     * Branches on the line with the fewest combinations left, preferring columns on ties.
+     */
+    BranchingStrategy FEWEST_COMBINATIONS = Board::findBestLine;
+
+    /**
+     * Branches on a single cell of the line with the fewest combinations left,
+     * the one whose crossing line has the fewest combinations left.
+     */
+    BranchingStrategy MOST_CONSTRAINED_CELL = Board::findMostConstrainedCell;
+
+    /**
+     * @param lineIds A component of the lines that still have undecided cells,
+     *                where no other line crosses them at an undecided cell,
+     *                listing the line with the fewest combinations left first.
+     * @return A line of the component, or an undecided cell on one of its lines.
+     */
+    int chooseBranch(Board board, int[] lineIds);
+}
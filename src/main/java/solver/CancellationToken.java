@@ -0,0 +1,16 @@
+package solver;
+
+/**
+ * Lets another thread stop a solve, which notices it before trying its next candidate line.
+ */
+public class CancellationToken {
+    private volatile boolean isCancelled = false;
+
+    public void cancel() {
+        this.isCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return this.isCancelled;
+    }
+}
@@ -0,0 +1,19 @@
+package solver;
+
+/**
+ * The order in which the search tries the combinations of the line it branches on.
+ */
+public enum CandidateOrder {
+    /**
+     * The order the combinations are enumerated in, blocks as far left as possible first.
+     */
+    IN_ORDER,
+
+    /**
+     * The combinations that agree with most of the others on the undecided cells first,
+     * as a guess at the ones most likely to be right.
+     * Only lines that list their combinations up front are reordered,
+     * lines that generate them lazily are still tried {@link #IN_ORDER}.
+     */
+    MOST_LIKELY_FIRST,
+}
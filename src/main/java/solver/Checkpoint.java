@@ -0,0 +1,192 @@
+package solver;
+
+import solver.exceptions.InvalidConstraintException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * A puzzle and a {@link SearchSnapshot} of its search, saved to a file so that a long solve can go on after a restart.
+ * The file starts with the magic bytes {@code NOCP} and a version byte, followed by the number of rows and of columns,
+ * the crossed cells of the puzzle, a byte each, every row constraint and every column constraint
+ * as its count of numbers followed by the numbers, and the snapshot, all big-endian,
+ * and ends with the CRC32 of everything before it.
+ * A checkpoint is written next to its file first, and then moved over it, so that the file is always whole.
+ */
+public class Checkpoint {
+    private static final byte[] MAGIC = {'N', 'O', 'C', 'P'};
+    private static final int VERSION = 4;
+
+    private final boolean[][] cells;
+    private final int[][] rowConstraints;
+    private final int[][] colConstraints;
+    private final SearchSnapshot snapshot;
+
+    public Checkpoint(boolean[][] cells, int[][] rowConstraints, int[][] colConstraints, SearchSnapshot snapshot) {
+        this.cells = cells;
+        this.rowConstraints = rowConstraints;
+        this.colConstraints = colConstraints;
+        this.snapshot = snapshot;
+    }
+
+    public boolean[][] getCells() {
+        return this.cells;
+    }
+
+    public int[][] getRowConstraints() {
+        return this.rowConstraints;
+    }
+
+    public int[][] getColConstraints() {
+        return this.colConstraints;
+    }
+
+    public SearchSnapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * Resumes the search on a new board of the puzzle, with the kind of constraints of the board that was saved.
+     * The solution limit and candidate order are those of the search that was saved, whatever the options say.
+     * @throws IllegalArgumentException If the snapshot is not of a search of the puzzle.
+     */
+    public Search resume(Consumer<Step> consumer, SolveOptions options) throws InvalidConstraintException {
+        Board board = new Board(this.cells, this.rowConstraints, this.colConstraints, this.snapshot.constraintType);
+        return board.resumeSearch(this.snapshot, consumer,
+                options.withSolutionLimit(this.snapshot.solutionLimit).withCandidateOrder(this.snapshot.candidateOrder));
+    }
+
+    /**
+     * Runs a search to the end, pausing it every {@code interval} to save a checkpoint of it to {@code path}.
+     * The checkpoint is deleted once the search is over, as there is nothing left to resume.
+     */
+    public static SolveResult runSearch(Search search, boolean[][] cells, int[][] rowConstraints, int[][] colConstraints,
+                                        Path path, Duration interval) throws IOException {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            long millis = Math.max(1, interval.toMillis());
+            scheduler.scheduleAtFixedRate(search::pause, millis, millis, TimeUnit.MILLISECONDS);
+            while (!search.run()) {
+                new Checkpoint(cells, rowConstraints, colConstraints, search.snapshot()).write(path);
+            }
+        } finally {
+            scheduler.shutdownNow();
+        }
+        Files.deleteIfExists(path);
+        return search.getResult();
+    }
+
+    public void write(Path path) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.write(MAGIC);
+        output.write(VERSION);
+        output.writeInt(this.rowConstraints.length);
+        output.writeInt(this.colConstraints.length);
+        for (boolean[] row: this.cells) {
+            for (boolean cell: row) {
+                output.writeBoolean(cell);
+            }
+        }
+        writeConstraints(output, this.rowConstraints);
+        writeConstraints(output, this.colConstraints);
+        this.snapshot.writeTo(output);
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        output.writeInt((int) crc.getValue());
+
+        Path writePath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(writePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(writePath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @throws IOException If the file is not a checkpoint, or fails its checksum.
+     */
+    public static Checkpoint read(Path path) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        int headerLength = MAGIC.length + 1;
+        if (bytes.length < headerLength + 4 || !Arrays.equals(MAGIC, Arrays.copyOf(bytes, MAGIC.length))
+                || bytes[MAGIC.length] != VERSION) {
+            throw new IOException("Not a checkpoint of version " + VERSION + ": " + path);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        if ((int) crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - 4, 4).getInt()) {
+            throw new IOException("Checkpoint fails its checksum: " + path);
+        }
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes, headerLength,
+                bytes.length - 4 - headerLength));
+        try {
+            int rowCount = input.readInt();
+            int colCount = input.readInt();
+            if (rowCount <= 0 || colCount <= 0 || (long) rowCount * colCount > bytes.length) {
+                throw new IOException("Checkpoint of a " + rowCount + "x" + colCount + " puzzle: " + path);
+            }
+            boolean[][] cells = new boolean[rowCount][colCount];
+            for (boolean[] row: cells) {
+                for (int j = 0; j < colCount; j++) {
+                    row[j] = input.readBoolean();
+                }
+            }
+            int[][] rowConstraints = readConstraints(input, rowCount, bytes.length);
+            int[][] colConstraints = readConstraints(input, colCount, bytes.length);
+            return new Checkpoint(cells, rowConstraints, colConstraints, SearchSnapshot.readFrom(input));
+        } catch (EOFException e) {
+            throw new IOException("Checkpoint ends early: " + path, e);
+        }
+    }
+
+    private static void writeConstraints(DataOutputStream output, int[][] constraints) throws IOException {
+        for (int[] constraint: constraints) {
+            output.writeInt(constraint.length);
+            for (int number: constraint) {
+                output.writeInt(number);
+            }
+        }
+    }
+
+    private static int[][] readConstraints(DataInputStream input, int count, int byteCount) throws IOException {
+        int[][] constraints = new int[count][];
+        for (int i = 0; i < count; i++) {
+            int length = input.readInt();
+            if (length < 0 || length > byteCount) {
+                throw new IOException("Constraint of " + length + " numbers");
+            }
+            constraints[i] = new int[length];
+            for (int k = 0; k < length; k++) {
+                constraints[i][k] = input.readInt();
+            }
+        }
+        return constraints;
+    }
+}
@@ -0,0 +1,223 @@
+package solver;
+
+import solver.exceptions.InvalidConstraintException;
+import solver.exceptions.TooManyCombinationsException;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Every combination of a clue on a line of some length, in order, packed into one flat array
+ * of the filled cells of each combination, as the crossed cells are all the others.
+ * Tables are immutable, and interned by their clue and length in a cache bounded by the memory of its tables,
+ * shared by all the lines of all the boards, so each table is only enumerated once while it is in use.
+ */
+public final class CombinationTable {
+    private static final class Key {
+        private final int[] numbers;
+        private final int length;
+
+        private Key(int[] numbers, int length) {
+            this.numbers = numbers;
+            this.length = length;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return this.length == key.length && Arrays.equals(this.numbers, key.numbers);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(this.numbers) + this.length;
+        }
+    }
+
+    private static final class Enumerator {
+        private final int[] numbers;
+        private final int wordCount;
+        private final long[] current;
+        private long[] filled;
+        private int size = 0;
+
+        private Enumerator(int[] numbers, int wordCount) {
+            this.numbers = numbers;
+            this.wordCount = wordCount;
+            this.current = new long[wordCount];
+            this.filled = new long[16 * wordCount];
+        }
+
+        /**
+         * Places the blocks from {@code blockIndex} on, from {@code start} at the earliest,
+         * with up to {@code slack} extra gap left to spread before them.
+         */
+        private void enumerate(int blockIndex, int start, int slack) {
+            if (blockIndex == this.numbers.length) {
+                if ((this.size + 1) * this.wordCount > this.filled.length) {
+                    this.filled = Arrays.copyOf(this.filled, this.filled.length * 2);
+                }
+                System.arraycopy(this.current, 0, this.filled, this.size * this.wordCount, this.wordCount);
+                this.size++;
+                return;
+            }
+            int number = this.numbers[blockIndex];
+            for (int gap = 0; gap <= slack; gap++) {
+                this.toggleBlock(start + gap, number);
+                this.enumerate(blockIndex + 1, start + gap + number + 1, slack - gap);
+                this.toggleBlock(start + gap, number);
+            }
+        }
+
+        private void toggleBlock(int start, int number) {
+            for (int i = start; i < start + number; i++) {
+                this.current[i >>> 6] ^= 1L << i;
+            }
+        }
+    }
+
+    /**
+     * The most combinations a table lists, as a table of more would hold more memory than a board should.
+     */
+    static final int MAX_SIZE = 1 << 20;
+    private static final long DEFAULT_CACHE_CAPACITY = 32L << 20;
+
+    private static final Map<Key, CombinationTable> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cacheCapacity = DEFAULT_CACHE_CAPACITY;
+    private static long cachedBytes = 0;
+
+    private final int length;
+    private final int wordCount;
+    private final int size;
+    private final long[] filled;
+
+    private CombinationTable(int length, int size, long[] filled) {
+        this.length = length;
+        this.wordCount = (length + 63) >>> 6;
+        this.size = size;
+        this.filled = filled;
+    }
+
+    /**
+     * Finds the table of a clue from the cache, or enumerates it.
+     * A clue of {@code 0} has no blocks, like an empty clue.
+     * @throws TooManyCombinationsException If the table would list more than {@link #MAX_SIZE} combinations.
+     */
+    static CombinationTable of(int[] numbers, int length) throws InvalidConstraintException {
+        numbers = Arrays.stream(numbers).filter(number -> number > 0).toArray();
+        int sum = Arrays.stream(numbers).sum() + Math.max(0, numbers.length - 1);
+        if (length < sum) {
+            throw new InvalidConstraintException();
+        }
+        if (count(numbers.length, length - sum) > MAX_SIZE) {
+            throw new TooManyCombinationsException();
+        }
+        Key key = new Key(numbers, length);
+        synchronized (cache) {
+            CombinationTable table = cache.get(key);
+            if (table != null) {
+                return table;
+            }
+        }
+        CombinationTable table = enumerate(numbers, length, length - sum);
+        synchronized (cache) {
+            CombinationTable cached = cache.putIfAbsent(key, table);
+            if (cached != null) {
+                return cached;
+            }
+            cachedBytes += table.getByteCount();
+            evict();
+        }
+        return table;
+    }
+
+    /**
+     * Counts the combinations the table of a clue lists, whatever the cells of the line,
+     * that is the ways to spread the slack of the line over the gaps around its blocks.
+     * @return The number of combinations, saturated at {@link Long#MAX_VALUE},
+     *         or {@code 0} if the clue does not fit in the line.
+     */
+    static long count(int[] numbers, int length) {
+        numbers = Arrays.stream(numbers).filter(number -> number > 0).toArray();
+        int sum = Arrays.stream(numbers).sum() + Math.max(0, numbers.length - 1);
+        return length < sum ? 0 : count(numbers.length, length - sum);
+    }
+
+    private static long count(int blockCount, int slack) {
+        // C(slack + blockCount, blockCount), built up so that every division is exact
+        long count = 1;
+        try {
+            for (int i = 1; i <= blockCount; i++) {
+                count = Math.multiplyExact(count, slack + i) / i;
+            }
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+        return count;
+    }
+
+    /**
+     * Bounds the memory of the tables kept for reuse, dropping the least recently used ones past it.
+     * Tables still used by a constraint stay alive until it is gone.
+     */
+    public static void setCacheCapacity(long bytes) {
+        synchronized (cache) {
+            cacheCapacity = bytes;
+            evict();
+        }
+    }
+
+    private static void evict() {
+        Iterator<CombinationTable> iterator = cache.values().iterator();
+        while (cachedBytes > cacheCapacity && iterator.hasNext()) {
+            cachedBytes -= iterator.next().getByteCount();
+            iterator.remove();
+        }
+    }
+
+    private static CombinationTable enumerate(int[] numbers, int length, int slack) {
+        Enumerator enumerator = new Enumerator(numbers, (length + 63) >>> 6);
+        enumerator.enumerate(0, 0, slack);
+        return new CombinationTable(length, enumerator.size,
+                Arrays.copyOf(enumerator.filled, enumerator.size * enumerator.wordCount));
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    int length() {
+        return this.length;
+    }
+
+    boolean isCompatible(int index, Line cells) {
+        return cells.isCompatibleWithCombination(this.filled, index * this.wordCount);
+    }
+
+    void copyTo(int index, Line result) {
+        result.copyFromCombination(this.filled, index * this.wordCount);
+    }
+
+    boolean isFilled(int index, int cellIndex) {
+        return (this.filled[index * this.wordCount + (cellIndex >>> 6)] & 1L << cellIndex) != 0;
+    }
+
+    void intersectInto(int index, Line result) {
+        result.intersectWithCombination(this.filled, index * this.wordCount);
+    }
+
+    Line toLine(int index) {
+        Line line = new Line(this.length);
+        this.copyTo(index, line);
+        return line;
+    }
+
+    private long getByteCount() {
+        return 8L * this.filled.length;
+    }
+}
@@ -2,151 +2,210 @@ package solver;
 
 import solver.exceptions.InvalidConstraintException;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
-import java.util.Stack;
-
-public class Constraint {
-    private static class PossibleCombination {
-        public final int[] realization;
-        public boolean isSatisfiable;
-
-        public PossibleCombination(int[] numbers, int length) {
-            this.realization = new int[length];
-            int i = 0;
-            boolean isChosen = false;
-            for (int number: numbers) {
-                for (int j = 0; j < number; j++) {
-                    this.realization[i] = isChosen ? 2 : 1;
-                    i++;
-                }
-                isChosen = !isChosen;
+
+/**
+ * A constraint that lists every combination of its clue up front.
+ * Updates and undos cost time proportional to the number of combinations,
+ * so this is the faster choice for lines with few of them.
+ * The combinations come from a {@link CombinationTable} shared with every line of the same clue and length,
+ * and this constraint only keeps which of them are still possible, as a bitset.
+ */
+public class Constraint implements LineConstraint {
+    private final CombinationTable table;
+    private final long[] satisfiable;
+    private int possibleCombinationCount;
+    /**
+     * The indices of the combinations ruled out by each update, one frame after another,
+     * with {@code frameStarts} marking where each frame begins.
+     */
+    private int[] removedCombinations = new int[64];
+    private int removedCombinationCount = 0;
+    private int[] frameStarts = new int[16];
+    private int frameCount = 0;
+    private boolean isResolved = false;
+    /**
+     * The combinations of the walk of {@link #startPossibilities(CandidateOrder)}, in the order it gives them,
+     * kept from one walk to the next, along with the scratch space to sort them.
+     */
+    private int[] walk = null;
+    private int walkSize = 0;
+    private int walkPosition = 0;
+    private int[] filledCounts = null;
+    private long[] walkKeys = null;
+
+    public Constraint(int[] numbers, int[] cells) throws InvalidConstraintException {
+        this(numbers, new Line(cells));
+    }
+
+    public Constraint(int[] numbers, Line cells) throws InvalidConstraintException {
+        this.table = CombinationTable.of(numbers, cells.length());
+        this.satisfiable = new long[(this.table.size() + 63) >>> 6];
+        for (int i = 0; i < this.table.size(); i++) {
+            if (this.table.isCompatible(i, cells)) {
+                this.satisfiable[i >>> 6] |= 1L << i;
+                this.possibleCombinationCount++;
             }
         }
+    }
 
-        public void updateSatisfiability(int[] cells) {
-            this.isSatisfiable = this.checkSatisfiability(cells);
-        }
+    private Constraint(Constraint constraint) {
+        this.table = constraint.table;
+        this.satisfiable = constraint.satisfiable.clone();
+        this.possibleCombinationCount = constraint.possibleCombinationCount;
+        this.isResolved = constraint.isResolved;
+    }
+
+    public void update(int[] cells) {
+        this.update(new Line(cells));
+    }
 
-        private boolean checkSatisfiability(int[] cells) {
-            assert cells.length == this.realization.length;
-            for (int i = 0; i < cells.length; i++) {
-                if (cells[i] != 0 && cells[i] != this.realization[i]) {
-                    return false;
+    @Override
+    public void update(Line cells) {
+        if (this.frameCount == this.frameStarts.length) {
+            this.frameStarts = Arrays.copyOf(this.frameStarts, this.frameStarts.length * 2);
+        }
+        int frameStart = this.removedCombinationCount;
+        this.frameStarts[this.frameCount++] = frameStart;
+        for (int word = 0; word < this.satisfiable.length; word++) {
+            for (long bits = this.satisfiable[word]; bits != 0; bits &= bits - 1) {
+                int i = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if (!this.table.isCompatible(i, cells)) {
+                    this.satisfiable[word] &= ~(1L << i);
+                    this.pushRemovedCombination(i);
                 }
             }
-            return true;
         }
+        this.possibleCombinationCount -= this.removedCombinationCount - frameStart;
+    }
 
-        public void undo() {
-            this.isSatisfiable = true;
+    private void pushRemovedCombination(int index) {
+        if (this.removedCombinationCount == this.removedCombinations.length) {
+            this.removedCombinations = Arrays.copyOf(this.removedCombinations, this.removedCombinations.length * 2);
         }
+        this.removedCombinations[this.removedCombinationCount++] = index;
+    }
 
-        @Override
-        public String toString() {
-            return Arrays.toString(this.realization);
+    @Override
+    public void undo() {
+        int frameStart = this.frameStarts[--this.frameCount];
+        for (int i = frameStart; i < this.removedCombinationCount; i++) {
+            int index = this.removedCombinations[i];
+            this.satisfiable[index >>> 6] |= 1L << index;
         }
+        this.possibleCombinationCount += this.removedCombinationCount - frameStart;
+        this.removedCombinationCount = frameStart;
     }
 
-    private final List<PossibleCombination> possibleCombinations;
-    private int possibleCombinationCount;
-    private final Stack<List<Integer>> removedCombinations = new Stack<>();
-    private boolean isResolved = false;
+    @Override
+    public int possibilityCount() {
+        return this.possibleCombinationCount;
+    }
 
-    public Constraint(int[] numbers, int[] cells) throws InvalidConstraintException {
-        int[] combination = new int[2 * numbers.length + 1];
-        combination[0] = 0;
-        int sum = 0;
-        for (int i = 0; i < numbers.length; i++) {
-            combination[2 * i + 1] = numbers[i];
-            if (i == numbers.length - 1) {
-                combination[2 * i + 2] = 0;
-                sum += numbers[i];
-            } else {
-                combination[2 * i + 2] = 1;
-                sum += numbers[i] + 1;
+    @Override
+    public void startPossibilities(CandidateOrder order) {
+        assert this.isResolved;
+        if (this.walk == null || this.walk.length < this.possibleCombinationCount) {
+            this.walk = new int[this.possibleCombinationCount];
+        }
+        this.walkSize = 0;
+        this.walkPosition = 0;
+        for (int word = 0; word < this.satisfiable.length; word++) {
+            for (long bits = this.satisfiable[word]; bits != 0; bits &= bits - 1) {
+                this.walk[this.walkSize++] = (word << 6) + Long.numberOfTrailingZeros(bits);
             }
         }
-
-        if (cells.length < sum) {
-            throw new InvalidConstraintException();
+        if (order == CandidateOrder.MOST_LIKELY_FIRST && this.walkSize > 2) {
+            this.sortWalkByAgreement();
         }
-
-        this.possibleCombinations = new ArrayList<>();
-        this.addPossibleCombination(combination, cells, cells.length - sum, 0);
-        this.possibleCombinationCount = this.possibleCombinations.size();
     }
 
-    private void addPossibleCombination(int[] combination, int[] cells, int difference, int index) {
-        assert difference >= 0;
-        assert index % 2 == 0;
-        if (index == combination.length - 1) {
-            combination[index] = difference;
-            PossibleCombination possibleCombination = new PossibleCombination(combination.clone(), cells.length);
-            possibleCombination.updateSatisfiability(cells);
-            if (possibleCombination.isSatisfiable) {
-                this.possibleCombinations.add(possibleCombination);
+    /**
+     * Sorts the walk by how many of its combinations agree with each one, summed over the cells,
+     * keeping the combinations in order on ties.
+     */
+    private void sortWalkByAgreement() {
+        int length = this.table.length();
+        if (this.filledCounts == null) {
+            this.filledCounts = new int[length];
+        } else {
+            Arrays.fill(this.filledCounts, 0);
+        }
+        for (int k = 0; k < this.walkSize; k++) {
+            for (int i = 0; i < length; i++) {
+                if (this.table.isFilled(this.walk[k], i)) {
+                    this.filledCounts[i]++;
+                }
             }
-            return;
         }
-
-        for (int increment = 0; increment <= difference; increment++) {
-            addPossibleCombination(combination, cells, difference - increment, index + 2);
-            combination[index]++;
+        if (this.walkKeys == null || this.walkKeys.length < this.walkSize) {
+            this.walkKeys = new long[this.walk.length];
         }
-        combination[index] -= (difference + 1);
-    }
-
-    public void update(int[] cells) {
-        List<Integer> unsatisfiableCombinations = new ArrayList<>();
-        for (int i = 0; i < this.possibleCombinations.size(); i++) {
-            PossibleCombination combination = this.possibleCombinations.get(i);
-            if (!combination.isSatisfiable) {
-                continue;
-            }
-            combination.updateSatisfiability(cells);
-            if (!combination.isSatisfiable) {
-                unsatisfiableCombinations.add(i);
+        for (int k = 0; k < this.walkSize; k++) {
+            long agreement = 0;
+            for (int i = 0; i < length; i++) {
+                agreement += this.table.isFilled(this.walk[k], i)
+                        ? this.filledCounts[i] : this.walkSize - this.filledCounts[i];
             }
+            long key = Integer.MAX_VALUE - Math.min(agreement, Integer.MAX_VALUE);
+            this.walkKeys[k] = key << 32 | this.walk[k];
+        }
+        Arrays.sort(this.walkKeys, 0, this.walkSize);
+        for (int k = 0; k < this.walkSize; k++) {
+            this.walk[k] = (int) this.walkKeys[k];
         }
-        this.removedCombinations.add(unsatisfiableCombinations);
-        this.possibleCombinationCount -= unsatisfiableCombinations.size();
     }
 
-    public void undo() {
-        List<Integer> toAddBack = this.removedCombinations.pop();
-        for (int i: toAddBack) {
-            this.possibleCombinations.get(i).undo();
-        }
-        this.possibleCombinationCount += toAddBack.size();
+    @Override
+    public boolean hasNextPossibility() {
+        return this.walkPosition < this.walkSize;
     }
 
-    public int possibilityCount() {
-        return this.possibleCombinationCount;
+    @Override
+    public void nextPossibility(Line result) {
+        this.table.copyTo(this.walk[this.walkPosition++], result);
     }
 
-    public List<int[]> getPossibilities() {
-        assert this.isResolved;
-        List<int[]> possibilities = new ArrayList<>();
-        for (PossibleCombination combination: this.possibleCombinations) {
-            if (!combination.isSatisfiable) {
-                continue;
+    @Override
+    public boolean findCommonCells(Line result) {
+        boolean isFirst = true;
+        for (int word = 0; word < this.satisfiable.length; word++) {
+            for (long bits = this.satisfiable[word]; bits != 0; bits &= bits - 1) {
+                int i = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if (isFirst) {
+                    this.table.copyTo(i, result);
+                    isFirst = false;
+                } else {
+                    this.table.intersectInto(i, result);
+                    if (result.isBlank()) {
+                        return true;
+                    }
+                }
             }
-            possibilities.add(combination.realization);
         }
-        return possibilities;
+        return !isFirst;
     }
 
+    /**
+     * Copies which combinations are possible, sharing the table with this constraint.
+     */
+    @Override
+    public LineConstraint copy(Line cells) {
+        return new Constraint(this);
+    }
+
+    @Override
     public boolean isResolved() {
         return this.isResolved;
     }
 
+    @Override
     public void resolve() {
         assert this.possibleCombinationCount > 0;
         this.isResolved = true;
     }
 
+    @Override
     public void unresolve() {
         this.isResolved = false;
     }
@@ -155,9 +214,9 @@ public class Constraint {
     public String toString() {
         StringBuilder stringBuilder = new StringBuilder();
         stringBuilder.append("Combinations: { ");
-        for (PossibleCombination combination: this.possibleCombinations) {
-            if (combination.isSatisfiable) {
-                stringBuilder.append(combination);
+        for (int word = 0; word < this.satisfiable.length; word++) {
+            for (long bits = this.satisfiable[word]; bits != 0; bits &= bits - 1) {
+                stringBuilder.append(this.table.toLine((word << 6) + Long.numberOfTrailingZeros(bits)));
                 stringBuilder.append(' ');
             }
         }
@@ -0,0 +1,41 @@
+package solver;
+
+/**
+ * A step that only carries the lines changed since the previous step.
+ * Every so often, a step is a keyframe instead, with {@link #board} holding the whole board
+ * and no changed lines.
+ * Use a {@link DeltaStepDecoder} to turn a sequence of these back into full steps.
+ */
+public class DeltaStep extends Step {
+    public static class LineChange {
+        public boolean isRow;
+        public int index;
+        public int[] cells;
+
+        public LineChange(boolean isRow, int index, int[] cells) {
+            this.isRow = isRow;
+            this.index = index;
+            this.cells = cells;
+        }
+    }
+
+    public LineChange[] lines;
+
+    /**
+     * A keyframe that was not reached through a line, like the first step of an answer from a cache.
+     */
+    public DeltaStep(int[][] keyframe) {
+        super(keyframe);
+        this.lines = new LineChange[0];
+    }
+
+    public DeltaStep(int[][] keyframe, boolean isRow, int index) {
+        super(keyframe, isRow, index);
+        this.lines = new LineChange[0];
+    }
+
+    public DeltaStep(LineChange[] lines, boolean isRow, int index) {
+        super(null, isRow, index);
+        this.lines = lines;
+    }
+}
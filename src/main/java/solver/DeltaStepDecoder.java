@@ -0,0 +1,43 @@
+package solver;
+
+/**
+ * Rebuilds full steps from a sequence of {@link DeltaStep}s, in the order they were produced.
+ * Full steps passed in are taken as they are, like keyframes.
+ */
+public class DeltaStepDecoder {
+    private int[][] board;
+
+    /**
+     * @return A full step with its own copy of the board.
+     */
+    public Step decode(Step step) {
+        if (step.board != null) {
+            this.board = new int[step.board.length][];
+            for (int i = 0; i < step.board.length; i++) {
+                this.board[i] = step.board[i].clone();
+            }
+        } else {
+            if (this.board == null) {
+                throw new IllegalStateException("The first step must be a keyframe");
+            }
+            for (DeltaStep.LineChange line: ((DeltaStep) step).lines) {
+                for (int i = 0; i < line.cells.length; i++) {
+                    if (line.isRow) {
+                        this.board[line.index][i] = line.cells[i];
+                    } else {
+                        this.board[i][line.index] = line.cells[i];
+                    }
+                }
+            }
+        }
+
+        int[][] board = new int[this.board.length][];
+        for (int i = 0; i < this.board.length; i++) {
+            board[i] = this.board[i].clone();
+        }
+        if (step.constraintInfo == null) {
+            return new Step(board);
+        }
+        return new Step(board, step.constraintInfo.isRow, step.constraintInfo.index);
+    }
+}
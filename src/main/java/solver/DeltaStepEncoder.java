@@ -0,0 +1,82 @@
+package solver;
+
+/**
+ * Turns the state of a board into {@link DeltaStep}s, keeping track of the cells changed between steps.
+ * The changes are given as whole lines in the direction of the step,
+ * so a step that only changes the line it is on costs {@code O(max(rowCount, colCount))}.
+ */
+class DeltaStepEncoder {
+    private final Line[] rows;
+    private final Line[] cols;
+    private final int keyframeInterval;
+    private int stepCount = 0;
+
+    private final boolean[] isRowChanged;
+    private final int[] changedRows;
+    private int changedRowCount = 0;
+    private final boolean[] isColChanged;
+    private final int[] changedCols;
+    private int changedColCount = 0;
+
+    public DeltaStepEncoder(Line[] rows, Line[] cols, int keyframeInterval) {
+        assert keyframeInterval > 0;
+        this.rows = rows;
+        this.cols = cols;
+        this.keyframeInterval = keyframeInterval;
+        this.isRowChanged = new boolean[rows.length];
+        this.changedRows = new int[rows.length];
+        this.isColChanged = new boolean[cols.length];
+        this.changedCols = new int[cols.length];
+    }
+
+    public void markChanged(int rowIndex, int colIndex) {
+        if (!this.isRowChanged[rowIndex]) {
+            this.isRowChanged[rowIndex] = true;
+            this.changedRows[this.changedRowCount++] = rowIndex;
+        }
+        if (!this.isColChanged[colIndex]) {
+            this.isColChanged[colIndex] = true;
+            this.changedCols[this.changedColCount++] = colIndex;
+        }
+    }
+
+    public DeltaStep encode(boolean isRow, int index) {
+        boolean isKeyframe = this.stepCount % this.keyframeInterval == 0;
+        this.stepCount++;
+        DeltaStep step;
+        if (isKeyframe) {
+            int[][] board = new int[this.rows.length][];
+            for (int i = 0; i < this.rows.length; i++) {
+                board[i] = this.rows[i].toArray();
+            }
+            step = new DeltaStep(board, isRow, index);
+        } else if (isRow) {
+            DeltaStep.LineChange[] lines = new DeltaStep.LineChange[this.changedRowCount];
+            for (int i = 0; i < this.changedRowCount; i++) {
+                int rowIndex = this.changedRows[i];
+                lines[i] = new DeltaStep.LineChange(true, rowIndex, this.rows[rowIndex].toArray());
+            }
+            step = new DeltaStep(lines, true, index);
+        } else {
+            DeltaStep.LineChange[] lines = new DeltaStep.LineChange[this.changedColCount];
+            for (int i = 0; i < this.changedColCount; i++) {
+                int colIndex = this.changedCols[i];
+                lines[i] = new DeltaStep.LineChange(false, colIndex, this.cols[colIndex].toArray());
+            }
+            step = new DeltaStep(lines, false, index);
+        }
+        this.clearChanges();
+        return step;
+    }
+
+    private void clearChanges() {
+        for (int i = 0; i < this.changedRowCount; i++) {
+            this.isRowChanged[this.changedRows[i]] = false;
+        }
+        this.changedRowCount = 0;
+        for (int i = 0; i < this.changedColCount; i++) {
+            this.isColChanged[this.changedCols[i]] = false;
+        }
+        this.changedColCount = 0;
+    }
+}
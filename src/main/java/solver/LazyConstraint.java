@@ -0,0 +1,411 @@
+package solver;
+
+import solver.exceptions.InvalidConstraintException;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A constraint that never lists the combinations of its clue.
+ * The combinations are counted, and the common cells found,
+ * with a dynamic programme over (block, cell) pairs in {@code O(length * blocks)},
+ * and are only generated one at a time once the line is resolved.
+ * This is the choice for lines whose clue has too many combinations to keep in memory.
+ */
+public class LazyConstraint implements LineConstraint {
+    /**
+     * Counts the ways to place the blocks of a clue onto a line.
+     * {@code suffix[b][i]} is the number of ways to place blocks {@code b} onwards in cells {@code i} onwards,
+     * and {@code prefix[b][i]} the number of ways to place the blocks before {@code b}
+     * in the cells before {@code i}, so that block {@code b} may start at {@code i}.
+     * Counts saturate at {@link Long#MAX_VALUE}.
+     */
+    private static class Placements {
+        private final int[] blocks;
+        private final int length;
+        private final int[] filledBefore;
+        private final int[] crossedBefore;
+        private final long[][] suffix;
+        private final long[][] prefix;
+        private final int[] filledCover;
+        private final boolean[] isEmptyPossible;
+
+        public Placements(int[] blocks, int length) {
+            this.blocks = blocks;
+            this.length = length;
+            this.filledBefore = new int[length + 1];
+            this.crossedBefore = new int[length + 1];
+            this.suffix = new long[blocks.length + 1][length + 1];
+            this.prefix = new long[blocks.length + 1][length + 1];
+            this.filledCover = new int[length + 1];
+            this.isEmptyPossible = new boolean[length];
+        }
+
+        public void load(Line cells) {
+            for (int i = 0; i < this.length; i++) {
+                int cell = cells.get(i);
+                this.filledBefore[i + 1] = this.filledBefore[i] + (cell == 2 ? 1 : 0);
+                this.crossedBefore[i + 1] = this.crossedBefore[i] + (cell == 1 ? 1 : 0);
+            }
+        }
+
+        public boolean canBeEmpty(int index) {
+            return this.filledBefore[index + 1] == this.filledBefore[index];
+        }
+
+        /**
+         * Checks whether block {@code block} can start at {@code start},
+         * including the cell right after it being empty.
+         */
+        public boolean fits(int block, int start) {
+            int end = start + this.blocks[block];
+            if (end > this.length || this.crossedBefore[end] != this.crossedBefore[start]) {
+                return false;
+            }
+            return end == this.length || this.canBeEmpty(end);
+        }
+
+        /**
+         * Finds where the next block may start, if block {@code block} starts at {@code start}.
+         */
+        public int next(int block, int start) {
+            int end = start + this.blocks[block];
+            return end == this.length ? end : end + 1;
+        }
+
+        public long countSuffix() {
+            int blockCount = this.blocks.length;
+            for (int i = 0; i <= this.length; i++) {
+                this.suffix[blockCount][i] = this.filledBefore[this.length] == this.filledBefore[i] ? 1 : 0;
+            }
+            for (int b = blockCount - 1; b >= 0; b--) {
+                this.suffix[b][this.length] = 0;
+                for (int i = this.length - 1; i >= 0; i--) {
+                    long ways = this.canBeEmpty(i) ? this.suffix[b][i + 1] : 0;
+                    if (this.fits(b, i)) {
+                        ways = add(ways, this.suffix[b + 1][this.next(b, i)]);
+                    }
+                    this.suffix[b][i] = ways;
+                }
+            }
+            return this.suffix[0][0];
+        }
+
+        public void countPrefix() {
+            int blockCount = this.blocks.length;
+            for (long[] row: this.prefix) {
+                Arrays.fill(row, 0);
+            }
+            this.prefix[0][0] = 1;
+            for (int i = 0; i < this.length; i++) {
+                for (int b = 0; b <= blockCount; b++) {
+                    long ways = this.prefix[b][i];
+                    if (ways == 0) {
+                        continue;
+                    }
+                    if (this.canBeEmpty(i)) {
+                        this.prefix[b][i + 1] = add(this.prefix[b][i + 1], ways);
+                    }
+                    if (b < blockCount && this.fits(b, i)) {
+                        int next = this.next(b, i);
+                        this.prefix[b + 1][next] = add(this.prefix[b + 1][next], ways);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Finds the common cells, given that both {@link #countSuffix()} and {@link #countPrefix()}
+         * have been run on the current cells.
+         */
+        public void findCommonCells(Line result) {
+            Arrays.fill(this.filledCover, 0);
+            Arrays.fill(this.isEmptyPossible, false);
+            for (int b = 0; b < this.blocks.length; b++) {
+                for (int start = 0; start < this.length; start++) {
+                    if (this.prefix[b][start] == 0 || !this.fits(b, start)
+                            || this.suffix[b + 1][this.next(b, start)] == 0) {
+                        continue;
+                    }
+                    int end = start + this.blocks[b];
+                    this.filledCover[start]++;
+                    this.filledCover[end]--;
+                    if (end < this.length) {
+                        this.isEmptyPossible[end] = true;
+                    }
+                }
+            }
+            for (int b = 0; b <= this.blocks.length; b++) {
+                for (int i = 0; i < this.length; i++) {
+                    if (this.prefix[b][i] != 0 && this.canBeEmpty(i) && this.suffix[b][i + 1] != 0) {
+                        this.isEmptyPossible[i] = true;
+                    }
+                }
+            }
+
+            int cover = 0;
+            for (int i = 0; i < this.length; i++) {
+                cover += this.filledCover[i];
+                if (!this.isEmptyPossible[i]) {
+                    result.set(i, 2);
+                } else if (cover == 0) {
+                    result.set(i, 1);
+                } else {
+                    result.set(i, 0);
+                }
+            }
+        }
+
+        private static long add(long a, long b) {
+            long sum = a + b;
+            return sum < 0 ? Long.MAX_VALUE : sum;
+        }
+    }
+
+    /**
+     * Generates the possible combinations in order, skipping dead ends with the suffix counts.
+     * A walk can be started over any number of times, with the same placements.
+     */
+    private static class CombinationWalk {
+        private final Placements placements;
+        private final int[] starts;
+        private boolean hasNext = false;
+
+        public CombinationWalk(int[] blocks, int length) {
+            this.placements = new Placements(blocks, length);
+            this.starts = new int[blocks.length];
+        }
+
+        public void start(Line cells) {
+            this.placements.load(cells);
+            this.hasNext = this.placements.countSuffix() > 0;
+            if (this.hasNext) {
+                this.placeFrom(0, 0);
+            }
+        }
+
+        /**
+         * Places the blocks from {@code block} onwards as early as possible,
+         * starting from cell {@code from}.
+         */
+        private void placeFrom(int block, int from) {
+            for (int b = block; b < this.starts.length; b++) {
+                this.starts[b] = this.findStart(b, from);
+                assert this.starts[b] != -1;
+                from = this.placements.next(b, this.starts[b]);
+            }
+        }
+
+        /**
+         * Finds the first start of block {@code block} at or after {@code start} that can be completed,
+         * given that the cells between the previous block and {@code start} can all be empty.
+         */
+        private int findStart(int block, int start) {
+            int end = this.placements.length - this.placements.blocks[block];
+            for (; start <= end; start++) {
+                if (this.placements.fits(block, start)
+                        && this.placements.suffix[block + 1][this.placements.next(block, start)] != 0) {
+                    return start;
+                }
+                if (!this.placements.canBeEmpty(start)) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        private void advance() {
+            for (int b = this.starts.length - 1; b >= 0; b--) {
+                int start = this.starts[b];
+                if (!this.placements.canBeEmpty(start)) {
+                    continue;
+                }
+                int nextStart = this.findStart(b, start + 1);
+                if (nextStart != -1) {
+                    this.starts[b] = nextStart;
+                    this.placeFrom(b + 1, this.placements.next(b, nextStart));
+                    return;
+                }
+            }
+            this.hasNext = false;
+        }
+
+        public boolean hasNext() {
+            return this.hasNext;
+        }
+
+        public void next(Line result) {
+            if (!this.hasNext) {
+                throw new NoSuchElementException();
+            }
+            for (int i = 0; i < this.placements.length; i++) {
+                result.set(i, 1);
+            }
+            for (int b = 0; b < this.starts.length; b++) {
+                for (int i = this.starts[b]; i < this.starts[b] + this.placements.blocks[b]; i++) {
+                    result.set(i, 2);
+                }
+            }
+            this.advance();
+        }
+    }
+
+    private final int[] blocks;
+    private final Placements placements;
+    private final Line cells;
+    private int possibleCombinationCount;
+    private int[] countTrail = new int[16];
+    private Line[] cellsTrail = new Line[16];
+    private int trailSize = 0;
+    private boolean isResolved = false;
+    private CombinationWalk walk = null;
+
+    public LazyConstraint(int[] numbers, int[] cells) throws InvalidConstraintException {
+        this(numbers, new Line(cells));
+    }
+
+    public LazyConstraint(int[] numbers, Line cells) throws InvalidConstraintException {
+        this.blocks = toBlocks(numbers);
+        if (cells.length() < minimumLength(this.blocks)) {
+            throw new InvalidConstraintException();
+        }
+        this.placements = new Placements(this.blocks, cells.length());
+        this.cells = cells.copy();
+        this.possibleCombinationCount = this.count(cells);
+    }
+
+    private LazyConstraint(LazyConstraint constraint, Line cells) {
+        this.blocks = constraint.blocks;
+        this.placements = new Placements(this.blocks, cells.length());
+        this.cells = constraint.cells.copy();
+        this.possibleCombinationCount = constraint.possibleCombinationCount;
+        this.isResolved = constraint.isResolved;
+    }
+
+    /**
+     * Counts the combinations of a clue that agree with the given cells,
+     * without listing them.
+     * @return The number of combinations, saturated at {@link Long#MAX_VALUE},
+     *         or {@code -1} if the clue does not fit in the line.
+     */
+    public static long countCombinations(int[] numbers, Line cells) {
+        int[] blocks = toBlocks(numbers);
+        if (cells.length() < minimumLength(blocks)) {
+            return -1;
+        }
+        Placements placements = new Placements(blocks, cells.length());
+        placements.load(cells);
+        return placements.countSuffix();
+    }
+
+    private static int[] toBlocks(int[] numbers) {
+        return Arrays.stream(numbers).filter(number -> number > 0).toArray();
+    }
+
+    private static int minimumLength(int[] blocks) {
+        int sum = Math.max(blocks.length - 1, 0);
+        for (int block: blocks) {
+            sum += block;
+        }
+        return sum;
+    }
+
+    private int count(Line cells) {
+        this.placements.load(cells);
+        return (int) Math.min(this.placements.countSuffix(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Copies the given cells, so that later changes to them by the caller do not leak into this constraint.
+     * The lines of the trail are kept for later updates, so a warmed-up constraint does not allocate.
+     */
+    @Override
+    public void update(Line cells) {
+        if (this.trailSize == this.countTrail.length) {
+            this.countTrail = Arrays.copyOf(this.countTrail, this.countTrail.length * 2);
+            this.cellsTrail = Arrays.copyOf(this.cellsTrail, this.cellsTrail.length * 2);
+        }
+        if (this.cellsTrail[this.trailSize] == null) {
+            this.cellsTrail[this.trailSize] = new Line(this.cells.length());
+        }
+        this.cellsTrail[this.trailSize].copyFrom(this.cells);
+        this.countTrail[this.trailSize] = this.possibleCombinationCount;
+        this.trailSize++;
+        this.cells.copyFrom(cells);
+        this.possibleCombinationCount = this.count(cells);
+    }
+
+    @Override
+    public void undo() {
+        this.trailSize--;
+        this.cells.copyFrom(this.cellsTrail[this.trailSize]);
+        this.possibleCombinationCount = this.countTrail[this.trailSize];
+    }
+
+    /**
+     * Gives the exact number of possible combinations, capped at {@link Integer#MAX_VALUE}.
+     */
+    @Override
+    public int possibilityCount() {
+        return this.possibleCombinationCount;
+    }
+
+    /**
+     * Generates the possible combinations lazily, in order whatever the order asked for.
+     */
+    @Override
+    public void startPossibilities(CandidateOrder order) {
+        assert this.isResolved;
+        if (this.walk == null) {
+            this.walk = new CombinationWalk(this.blocks, this.cells.length());
+        }
+        this.walk.start(this.cells);
+    }
+
+    @Override
+    public boolean hasNextPossibility() {
+        return this.walk.hasNext();
+    }
+
+    @Override
+    public void nextPossibility(Line result) {
+        this.walk.next(result);
+    }
+
+    @Override
+    public boolean findCommonCells(Line result) {
+        this.placements.load(this.cells);
+        if (this.placements.countSuffix() == 0) {
+            return false;
+        }
+        this.placements.countPrefix();
+        this.placements.findCommonCells(result);
+        return true;
+    }
+
+    @Override
+    public LineConstraint copy(Line cells) {
+        return new LazyConstraint(this, cells);
+    }
+
+    @Override
+    public boolean isResolved() {
+        return this.isResolved;
+    }
+
+    @Override
+    public void resolve() {
+        assert this.possibleCombinationCount > 0;
+        this.isResolved = true;
+    }
+
+    @Override
+    public void unresolve() {
+        this.isResolved = false;
+    }
+
+    @Override
+    public String toString() {
+        return "Blocks: " + Arrays.toString(this.blocks) + ", combinations: " + this.possibleCombinationCount;
+    }
+}
@@ -0,0 +1,153 @@
+package solver;
+
+import java.util.Arrays;
+
+/**
+ * A row or column of cells, packed into two bit masks.
+ * A cell is undecided if it is in neither mask,
+ * crossed if it is in the empty mask, and chosen if it is in the filled mask.
+ * {@link #get(int)} and {@link #set(int, int)} use the same {@code 0}/{@code 1}/{@code 2}
+ * codes as {@link Board}.
+ */
+public class Line {
+    private final int length;
+    private final long[] filled;
+    private final long[] empty;
+
+    public Line(int length) {
+        this.length = length;
+        int wordCount = (length + 63) >>> 6;
+        this.filled = new long[wordCount];
+        this.empty = new long[wordCount];
+    }
+
+    public Line(int[] cells) {
+        this(cells.length);
+        for (int i = 0; i < cells.length; i++) {
+            this.set(i, cells[i]);
+        }
+    }
+
+    public int length() {
+        return this.length;
+    }
+
+    public int get(int index) {
+        long bit = 1L << index;
+        int word = index >>> 6;
+        if ((this.filled[word] & bit) != 0) {
+            return 2;
+        }
+        if ((this.empty[word] & bit) != 0) {
+            return 1;
+        }
+        return 0;
+    }
+
+    public void set(int index, int value) {
+        assert value >= 0 && value <= 2;
+        long bit = 1L << index;
+        int word = index >>> 6;
+        this.filled[word] &= ~bit;
+        this.empty[word] &= ~bit;
+        if (value == 2) {
+            this.filled[word] |= bit;
+        } else if (value == 1) {
+            this.empty[word] |= bit;
+        }
+    }
+
+    /**
+     * Checks whether the two lines have no cell that is chosen in one and crossed in the other.
+     */
+    public boolean isCompatibleWith(Line other) {
+        assert this.length == other.length;
+        for (int i = 0; i < this.filled.length; i++) {
+            if ((this.filled[i] & other.empty[i]) != 0 || (this.empty[i] & other.filled[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Keeps only the cells that are decided the same way in both lines.
+     */
+    public void intersectWith(Line other) {
+        assert this.length == other.length;
+        for (int i = 0; i < this.filled.length; i++) {
+            this.filled[i] &= other.filled[i];
+            this.empty[i] &= other.empty[i];
+        }
+    }
+
+    /**
+     * Checks whether every cell in this line is undecided.
+     */
+    public boolean isBlank() {
+        for (int i = 0; i < this.filled.length; i++) {
+            if (this.filled[i] != 0 || this.empty[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void copyFrom(Line other) {
+        assert this.length == other.length;
+        System.arraycopy(other.filled, 0, this.filled, 0, this.filled.length);
+        System.arraycopy(other.empty, 0, this.empty, 0, this.empty.length);
+    }
+
+    public Line copy() {
+        Line line = new Line(this.length);
+        line.copyFrom(this);
+        return line;
+    }
+
+    /**
+     * Checks {@link #isCompatibleWith(Line)} against a combination of a {@link CombinationTable},
+     * given by the words of its filled cells starting at {@code offset}, with every other cell crossed.
+     */
+    boolean isCompatibleWithCombination(long[] combinations, int offset) {
+        for (int i = 0; i < this.filled.length; i++) {
+            long combination = combinations[offset + i];
+            if ((combination & this.empty[i]) != 0 || (this.filled[i] & ~combination) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void copyFromCombination(long[] combinations, int offset) {
+        for (int i = 0; i < this.filled.length; i++) {
+            this.filled[i] = combinations[offset + i];
+            this.empty[i] = this.getWordMask(i) & ~combinations[offset + i];
+        }
+    }
+
+    void intersectWithCombination(long[] combinations, int offset) {
+        for (int i = 0; i < this.filled.length; i++) {
+            this.filled[i] &= combinations[offset + i];
+            this.empty[i] &= ~combinations[offset + i];
+        }
+    }
+
+    private long getWordMask(int word) {
+        int remaining = this.length - 64 * word;
+        return remaining >= 64 ? -1L : (1L << remaining) - 1;
+    }
+
+    public int[] toArray() {
+        int[] cells = new int[this.length];
+        for (int i = 0; i < this.length; i++) {
+            cells[i] = this.get(i);
+        }
+        return cells;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(this.toArray());
+    }
+}
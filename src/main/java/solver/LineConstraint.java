@@ -0,0 +1,55 @@
+package solver;
+
+/**
+ * The constraint on one row or column, tracking which combinations of the clue
+ * are still possible given the cells decided so far.
+ * Every {@link #update(Line)} must be matched by one {@link #undo()}, in reverse order.
+ */
+public interface LineConstraint {
+    /**
+     * Rules out the combinations that do not agree with the given cells.
+     */
+    void update(Line cells);
+
+    /**
+     * Reverts the most recent {@link #update(Line)}.
+     */
+    void undo();
+
+    int possibilityCount();
+
+    /**
+     * Starts a walk over the combinations that are still possible, for {@link #nextPossibility(Line)}.
+     * The walk goes over the combinations as they are at the time of this call,
+     * whatever updates happen in between, and only one walk can go on at a time.
+     * Must only be called while the constraint is resolved.
+     */
+    void startPossibilities(CandidateOrder order);
+
+    boolean hasNextPossibility();
+
+    /**
+     * Writes the next combination of the walk into the given line.
+     */
+    void nextPossibility(Line result);
+
+    /**
+     * Finds the cells that every possible combination agrees on.
+     * @param result The line to write the common cells into,
+     *               all other cells are left undecided.
+     * @return {@code false} if there is no possible combination left.
+     */
+    boolean findCommonCells(Line result);
+
+    /**
+     * Copies the current state of this constraint, without its undo history.
+     * @param cells The line the copy is on, which must be a copy of the line this constraint is on.
+     */
+    LineConstraint copy(Line cells);
+
+    boolean isResolved();
+
+    void resolve();
+
+    void unresolve();
+}
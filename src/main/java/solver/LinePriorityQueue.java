@@ -0,0 +1,126 @@
+package solver;
+
+import java.util.Arrays;
+
+/**
+ * A binary heap of the lines that still have undecided cells, ordered by how few combinations they have left,
+ * preferring columns and then lower ids on ties, so that the best line to branch on is always on top.
+ * The position of every line in the heap is indexed, so a line whose count changed is moved in {@code O(log n)}.
+ */
+class LinePriorityQueue {
+    private final LineConstraint[] constraints;
+    private final int rowCount;
+    private final int[] heap;
+    private final int[] positions;
+    private int size = 0;
+
+    /**
+     * @param constraints The constraint of each line, by line id.
+     */
+    LinePriorityQueue(LineConstraint[] constraints, int rowCount) {
+        this.constraints = constraints;
+        this.rowCount = rowCount;
+        this.heap = new int[constraints.length];
+        this.positions = new int[constraints.length];
+        Arrays.fill(this.positions, -1);
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * @return The line with the fewest combinations, or {@code -1} if there is none.
+     */
+    int peek() {
+        return this.size == 0 ? -1 : this.heap[0];
+    }
+
+    void add(int lineId) {
+        assert this.positions[lineId] == -1;
+        this.heap[this.size] = lineId;
+        this.positions[lineId] = this.size;
+        this.size++;
+        this.siftUp(this.size - 1);
+    }
+
+    void remove(int lineId) {
+        int position = this.positions[lineId];
+        assert position != -1;
+        this.size--;
+        this.positions[lineId] = -1;
+        if (position == this.size) {
+            return;
+        }
+        this.heap[position] = this.heap[this.size];
+        this.positions[this.heap[position]] = position;
+        this.siftDown(position);
+        this.siftUp(position);
+    }
+
+    /**
+     * Moves a line to its place after the number of combinations it has left changed.
+     * Lines that are not in the queue are ignored.
+     */
+    void update(int lineId) {
+        int position = this.positions[lineId];
+        if (position == -1) {
+            return;
+        }
+        this.siftDown(position);
+        this.siftUp(position);
+    }
+
+    /**
+     * Whether a line is better to branch on than another, in the order of the queue.
+     */
+    boolean isBefore(int lineId, int otherLineId) {
+        int count = this.constraints[lineId].possibilityCount();
+        int otherCount = this.constraints[otherLineId].possibilityCount();
+        if (count != otherCount) {
+            return count < otherCount;
+        }
+        boolean isRow = lineId < this.rowCount;
+        if (isRow != otherLineId < this.rowCount) {
+            return !isRow;
+        }
+        return lineId < otherLineId;
+    }
+
+    private void siftUp(int position) {
+        int lineId = this.heap[position];
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (!this.isBefore(lineId, this.heap[parent])) {
+                break;
+            }
+            this.place(this.heap[parent], position);
+            position = parent;
+        }
+        this.place(lineId, position);
+    }
+
+    private void siftDown(int position) {
+        int lineId = this.heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= this.size) {
+                break;
+            }
+            if (child + 1 < this.size && this.isBefore(this.heap[child + 1], this.heap[child])) {
+                child++;
+            }
+            if (!this.isBefore(this.heap[child], lineId)) {
+                break;
+            }
+            this.place(this.heap[child], position);
+            position = child;
+        }
+        this.place(lineId, position);
+    }
+
+    private void place(int lineId, int position) {
+        this.heap[position] = lineId;
+        this.positions[lineId] = position;
+    }
+}
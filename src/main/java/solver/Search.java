@@ -0,0 +1,76 @@
+package solver;
+
+import java.util.function.Consumer;
+
+/**
+ * A solve of a {@link Board} that keeps its frames on a stack of its own rather than the thread's,
+ * so that no puzzle is too deep for it, and it can stop between two nodes and go on later.
+ * Started with {@link Board#startSearch(Consumer, SolveOptions)}, or {@link Board#resumeSearch}.
+ * Only {@link #pause()} and {@link #getProgress()} may be called from another thread than the one running the search.
+ */
+public class Search {
+    private final Board board;
+    private SolveResult result = null;
+
+    Search(Board board) {
+        this.board = board;
+    }
+
+    /**
+     * Runs the search until it is finished, or paused.
+     * @return {@code true} once the search is finished, with its result in {@link #getResult()}.
+     */
+    public boolean run() {
+        if (this.result == null) {
+            boolean isFinished;
+            try {
+                isFinished = this.board.runSearch();
+            } catch (RuntimeException | Error e) {
+                this.board.endSearch();
+                throw e;
+            }
+            if (isFinished) {
+                this.result = this.board.finishSearch();
+            }
+        }
+        return this.result != null;
+    }
+
+    /**
+     * Asks the search to stop before its next node, returning from {@link #run()}.
+     * If the search is not running, the next run stops right away.
+     */
+    public void pause() {
+        this.board.requestPause();
+    }
+
+    /**
+     * Reads how far the search has got, which may be done while it runs.
+     */
+    public SearchProgress getProgress() {
+        return this.board.getProgress();
+    }
+
+    public boolean isFinished() {
+        return this.result != null;
+    }
+
+    /**
+     * @return The result of the search, or {@code null} until it is finished.
+     */
+    public SolveResult getResult() {
+        return this.result;
+    }
+
+    /**
+     * Captures where the search is, to resume it with {@link Board#resumeSearch}.
+     * Must only be called while the search is not running.
+     * @throws IllegalStateException If the search is finished.
+     */
+    public SearchSnapshot snapshot() {
+        if (this.result != null) {
+            throw new IllegalStateException("The search is finished");
+        }
+        return this.board.snapshotSearch();
+    }
+}
@@ -0,0 +1,43 @@
+package solver;
+
+/**
+ * How far a {@link Search} has got, as read from another thread while it runs.
+ */
+public class SearchProgress {
+    private final long nodeCount;
+    private final int resolvedLineCount;
+    private final int lineCount;
+    private final int depth;
+
+    SearchProgress(long nodeCount, int resolvedLineCount, int lineCount, int depth) {
+        this.nodeCount = nodeCount;
+        this.resolvedLineCount = resolvedLineCount;
+        this.lineCount = lineCount;
+        this.depth = depth;
+    }
+
+    /**
+     * @return The number of candidates the search tried so far.
+     */
+    public long getNodeCount() {
+        return this.nodeCount;
+    }
+
+    /**
+     * @return The number of rows and columns with every cell decided, on the branch the search is on.
+     */
+    public int getResolvedLineCount() {
+        return this.resolvedLineCount;
+    }
+
+    public int getLineCount() {
+        return this.lineCount;
+    }
+
+    /**
+     * @return The number of components being searched, one inside the other.
+     */
+    public int getDepth() {
+        return this.depth;
+    }
+}
@@ -0,0 +1,163 @@
+package solver;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Where a paused {@link Search} was, to resume it on a new board of the same puzzle.
+ * Rather than the state of every constraint, it holds the cells of the board, and for each frame of the search,
+ * its branch, how many candidates of it were tried, and how many components of the last one were solved,
+ * which is enough to fill the same candidates in again.
+ */
+public class SearchSnapshot {
+    int rowCount;
+    int colCount;
+    /**
+     * The cells row by row, as {@code 0}/{@code 1}/{@code 2} codes.
+     */
+    int[] cells;
+    Board.ConstraintType constraintType;
+    int solutionLimit;
+    CandidateOrder candidateOrder;
+
+    /**
+     * The frames from the bottom one up.
+     * The component index is {@code -1} for a frame between two candidates.
+     */
+    int[] branches;
+    int[] cursors;
+    int[] componentIndices;
+    long[] startNodeCounts;
+    int[] startSolutionCounts;
+
+    long nodeCount;
+    long backtrackCount;
+    long constraintUpdateCount;
+    long skippedUpdateCount;
+    long eliminatedCombinationCount;
+    int maxDepth;
+    int solutionCount;
+    boolean[][] firstSolution;
+    long searchNanos;
+
+    SearchSnapshot() {
+    }
+
+    /**
+     * Writes the snapshot as ints, longs, and a byte per cell, for {@link #readFrom(DataInputStream)}.
+     */
+    void writeTo(DataOutputStream output) throws IOException {
+        output.writeInt(this.rowCount);
+        output.writeInt(this.colCount);
+        for (int cell: this.cells) {
+            output.writeByte(cell);
+        }
+        output.writeByte(this.constraintType.ordinal());
+        output.writeInt(this.solutionLimit);
+        output.writeByte(this.candidateOrder.ordinal());
+        output.writeInt(this.branches.length);
+        for (int k = 0; k < this.branches.length; k++) {
+            output.writeInt(this.branches[k]);
+            output.writeInt(this.cursors[k]);
+            output.writeInt(this.componentIndices[k]);
+            output.writeLong(this.startNodeCounts[k]);
+            output.writeInt(this.startSolutionCounts[k]);
+        }
+        output.writeLong(this.nodeCount);
+        output.writeLong(this.backtrackCount);
+        output.writeLong(this.constraintUpdateCount);
+        output.writeLong(this.skippedUpdateCount);
+        output.writeLong(this.eliminatedCombinationCount);
+        output.writeInt(this.maxDepth);
+        output.writeInt(this.solutionCount);
+        output.writeBoolean(this.firstSolution != null);
+        if (this.firstSolution != null) {
+            for (boolean[] row: this.firstSolution) {
+                for (boolean cell: row) {
+                    output.writeBoolean(cell);
+                }
+            }
+        }
+        output.writeLong(this.searchNanos);
+    }
+
+    /**
+     * @throws IOException If the data ends early, or its sizes are out of range.
+     */
+    static SearchSnapshot readFrom(DataInputStream input) throws IOException {
+        SearchSnapshot snapshot = new SearchSnapshot();
+        snapshot.rowCount = input.readInt();
+        snapshot.colCount = input.readInt();
+        if (snapshot.rowCount <= 0 || snapshot.colCount <= 0
+                || (long) snapshot.rowCount * snapshot.colCount > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot of a " + snapshot.rowCount + "x" + snapshot.colCount + " board");
+        }
+        snapshot.cells = new int[snapshot.rowCount * snapshot.colCount];
+        for (int i = 0; i < snapshot.cells.length; i++) {
+            snapshot.cells[i] = input.readUnsignedByte();
+        }
+        int constraintType = input.readUnsignedByte();
+        if (constraintType >= Board.ConstraintType.values().length) {
+            throw new IOException("Unknown constraint type " + constraintType);
+        }
+        snapshot.constraintType = Board.ConstraintType.values()[constraintType];
+        snapshot.solutionLimit = input.readInt();
+        int order = input.readUnsignedByte();
+        if (order >= CandidateOrder.values().length) {
+            throw new IOException("Unknown candidate order " + order);
+        }
+        snapshot.candidateOrder = CandidateOrder.values()[order];
+        int frameCount = input.readInt();
+        if (frameCount < 0 || frameCount > snapshot.rowCount + snapshot.colCount + snapshot.cells.length + 1) {
+            throw new IOException("Snapshot of " + frameCount + " frames");
+        }
+        snapshot.branches = new int[frameCount];
+        snapshot.cursors = new int[frameCount];
+        snapshot.componentIndices = new int[frameCount];
+        snapshot.startNodeCounts = new long[frameCount];
+        snapshot.startSolutionCounts = new int[frameCount];
+        for (int k = 0; k < frameCount; k++) {
+            snapshot.branches[k] = input.readInt();
+            snapshot.cursors[k] = input.readInt();
+            snapshot.componentIndices[k] = input.readInt();
+            snapshot.startNodeCounts[k] = input.readLong();
+            snapshot.startSolutionCounts[k] = input.readInt();
+        }
+        snapshot.nodeCount = input.readLong();
+        snapshot.backtrackCount = input.readLong();
+        snapshot.constraintUpdateCount = input.readLong();
+        snapshot.skippedUpdateCount = input.readLong();
+        snapshot.eliminatedCombinationCount = input.readLong();
+        snapshot.maxDepth = input.readInt();
+        snapshot.solutionCount = input.readInt();
+        if (input.readBoolean()) {
+            snapshot.firstSolution = new boolean[snapshot.rowCount][snapshot.colCount];
+            for (boolean[] row: snapshot.firstSolution) {
+                for (int j = 0; j < row.length; j++) {
+                    row[j] = input.readBoolean();
+                }
+            }
+        }
+        snapshot.searchNanos = input.readLong();
+        return snapshot;
+    }
+
+    /**
+     * @return The number of components being searched, one inside the other.
+     */
+    public int getDepth() {
+        return Math.max(0, this.branches.length - 1);
+    }
+
+    public int getSolutionLimit() {
+        return this.solutionLimit;
+    }
+
+    /**
+     * @return The number of candidate lines tried so far.
+     */
+    public long getNodeCount() {
+        return this.nodeCount;
+    }
+}
@@ -0,0 +1,78 @@
+package solver;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tracks one solve against its {@link SolveOptions}, shared by all copies of the board in a parallel solve.
+ * Every candidate line tried is a node. The token is checked on every node,
+ * and the clock only every {@link #CLOCK_CHECK_INTERVAL} nodes.
+ */
+class SolveBudget {
+    private static final int CLOCK_CHECK_INTERVAL = 64;
+
+    private final long deadline;
+    private final boolean hasDeadline;
+    private final long maxNodes;
+    private final CancellationToken cancellationToken;
+    private final AtomicLong nodeCount = new AtomicLong();
+    private final AtomicReference<SolveOutcome> stopReason = new AtomicReference<>();
+
+    SolveBudget(SolveOptions options) {
+        this(options, 0);
+    }
+
+    /**
+     * @param nodeCount The number of nodes already searched, when resuming a search.
+     */
+    SolveBudget(SolveOptions options, long nodeCount) {
+        this.nodeCount.set(nodeCount);
+        this.hasDeadline = options.getTimeout() != null;
+        this.deadline = this.hasDeadline ? System.nanoTime() + options.getTimeout().toNanos() : 0;
+        this.maxNodes = options.getMaxNodes();
+        this.cancellationToken = options.getCancellationToken();
+    }
+
+    /**
+     * Counts a new node, unless the solve has been stopped or this node would go over budget.
+     * @return {@code false} if the search must stop.
+     */
+    boolean tryEnterNode() {
+        if (this.stopReason.get() != null) {
+            return false;
+        }
+        if (this.cancellationToken != null && this.cancellationToken.isCancelled()) {
+            this.stop(SolveOutcome.CANCELLED);
+            return false;
+        }
+        long count = this.nodeCount.incrementAndGet();
+        if (this.maxNodes > 0 && count > this.maxNodes
+                || this.hasDeadline && count % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() - this.deadline > 0) {
+            this.stop(SolveOutcome.BUDGET_EXHAUSTED);
+            return false;
+        }
+        return true;
+    }
+
+    boolean isStopped() {
+        return this.stopReason.get() != null;
+    }
+
+    /**
+     * Stops every branch of the search, keeping the first reason given.
+     */
+    void stop(SolveOutcome reason) {
+        this.stopReason.compareAndSet(null, reason);
+    }
+
+    /**
+     * @return Why the search was stopped, or {@code null} if it was not.
+     */
+    SolveOutcome getStopReason() {
+        return this.stopReason.get();
+    }
+
+    long getNodeCount() {
+        return Math.min(this.nodeCount.get(), this.maxNodes > 0 ? this.maxNodes : Long.MAX_VALUE);
+    }
+}
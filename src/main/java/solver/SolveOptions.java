@@ -0,0 +1,134 @@
+package solver;
+
+import java.time.Duration;
+
+/**
+ * Limits on a solve, and how its steps are given.
+ * A solve that runs past its deadline or its node budget, or whose token is cancelled,
+ * stops with {@link SolveOutcome#BUDGET_EXHAUSTED} or {@link SolveOutcome#CANCELLED}.
+ * Options are immutable, each {@code with} method returns a changed copy.
+ */
+public class SolveOptions {
+    public static final SolveOptions DEFAULT = new SolveOptions(null, 0, null, 0, 1, 1 << 14,
+            BranchingStrategy.FEWEST_COMBINATIONS, CandidateOrder.IN_ORDER);
+
+    private final Duration timeout;
+    private final long maxNodes;
+    private final CancellationToken cancellationToken;
+    private final int keyframeInterval;
+    private final int solutionLimit;
+    private final int transpositionTableSize;
+    private final BranchingStrategy branchingStrategy;
+    private final CandidateOrder candidateOrder;
+
+    private SolveOptions(Duration timeout, long maxNodes, CancellationToken cancellationToken, int keyframeInterval,
+                         int solutionLimit, int transpositionTableSize, BranchingStrategy branchingStrategy,
+                         CandidateOrder candidateOrder) {
+        this.timeout = timeout;
+        this.maxNodes = maxNodes;
+        this.cancellationToken = cancellationToken;
+        this.keyframeInterval = keyframeInterval;
+        this.solutionLimit = solutionLimit;
+        this.transpositionTableSize = transpositionTableSize;
+        this.branchingStrategy = branchingStrategy;
+        this.candidateOrder = candidateOrder;
+    }
+
+    /**
+     * @param timeout The wall-clock time the solve may take, counted from when it starts,
+     *                or {@code null} for no limit.
+     */
+    public SolveOptions withTimeout(Duration timeout) {
+        return new SolveOptions(timeout, this.maxNodes, this.cancellationToken, this.keyframeInterval,
+                this.solutionLimit, this.transpositionTableSize, this.branchingStrategy, this.candidateOrder);
+    }
+
+    /**
+     * @param maxNodes The number of candidate lines the search may try, or {@code 0} for no limit.
+     */
+    public SolveOptions withMaxNodes(long maxNodes) {
+        return new SolveOptions(this.timeout, maxNodes, this.cancellationToken, this.keyframeInterval,
+                this.solutionLimit, this.transpositionTableSize, this.branchingStrategy, this.candidateOrder);
+    }
+
+    public SolveOptions withCancellationToken(CancellationToken cancellationToken) {
+        return new SolveOptions(this.timeout, this.maxNodes, cancellationToken, this.keyframeInterval,
+                this.solutionLimit, this.transpositionTableSize, this.branchingStrategy, this.candidateOrder);
+    }
+
+    /**
+     * Gives the steps as {@link DeltaStep}s, with a keyframe of the whole board every {@code keyframeInterval} steps,
+     * or as full steps if it is {@code 0}.
+     */
+    public SolveOptions withDeltaSteps(int keyframeInterval) {
+        return new SolveOptions(this.timeout, this.maxNodes, this.cancellationToken, keyframeInterval,
+                this.solutionLimit, this.transpositionTableSize, this.branchingStrategy, this.candidateOrder);
+    }
+
+    /**
+     * Keeps searching after the first solution, until {@code solutionLimit} solutions are found
+     * or there are no more, to count them.
+     * A limit of {@code 2} is enough to tell whether the solution is unique.
+     */
+    public SolveOptions withSolutionLimit(int solutionLimit) {
+        return new SolveOptions(this.timeout, this.maxNodes, this.cancellationToken, this.keyframeInterval,
+                solutionLimit, this.transpositionTableSize, this.branchingStrategy, this.candidateOrder);
+    }
+
+    /**
+     * @param transpositionTableSize The number of failed parts of the board the search remembers,
+     *                               or {@code 0} to not remember any.
+     */
+    public SolveOptions withTranspositionTableSize(int transpositionTableSize) {
+        return new SolveOptions(this.timeout, this.maxNodes, this.cancellationToken, this.keyframeInterval,
+                this.solutionLimit, transpositionTableSize, this.branchingStrategy, this.candidateOrder);
+    }
+
+    /**
+     * @param branchingStrategy What the search branches on, {@link BranchingStrategy#FEWEST_COMBINATIONS} by default.
+     */
+    public SolveOptions withBranchingStrategy(BranchingStrategy branchingStrategy) {
+        return new SolveOptions(this.timeout, this.maxNodes, this.cancellationToken, this.keyframeInterval,
+                this.solutionLimit, this.transpositionTableSize, branchingStrategy, this.candidateOrder);
+    }
+
+    /**
+     * @param candidateOrder The order the combinations of a line are tried in, {@link CandidateOrder#IN_ORDER} by default.
+     */
+    public SolveOptions withCandidateOrder(CandidateOrder candidateOrder) {
+        return new SolveOptions(this.timeout, this.maxNodes, this.cancellationToken, this.keyframeInterval,
+                this.solutionLimit, this.transpositionTableSize, this.branchingStrategy, candidateOrder);
+    }
+
+    public Duration getTimeout() {
+        return this.timeout;
+    }
+
+    public long getMaxNodes() {
+        return this.maxNodes;
+    }
+
+    public CancellationToken getCancellationToken() {
+        return this.cancellationToken;
+    }
+
+    public int getKeyframeInterval() {
+        return this.keyframeInterval;
+    }
+
+    public int getSolutionLimit() {
+        return this.solutionLimit;
+    }
+
+    public int getTranspositionTableSize() {
+        return this.transpositionTableSize;
+    }
+
+    public BranchingStrategy getBranchingStrategy() {
+        return this.branchingStrategy;
+    }
+
+    public CandidateOrder getCandidateOrder() {
+        return this.candidateOrder;
+    }
+}
@@ -0,0 +1,14 @@
+package solver;
+
+public enum SolveOutcome {
+    SOLVED,
+    /**
+     * The whole search space was explored without finding a solution.
+     */
+    UNSOLVABLE,
+    /**
+     * The solve ran past its deadline or its node budget, so the puzzle may or may not have a solution.
+     */
+    BUDGET_EXHAUSTED,
+    CANCELLED,
+}
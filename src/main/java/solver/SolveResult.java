@@ -0,0 +1,48 @@
+package solver;
+
+public class SolveResult {
+    private final SolveOutcome outcome;
+    private final boolean[][] solution;
+    private final long nodeCount;
+    private final int solutionCount;
+    private final SolverStats stats;
+
+    SolveResult(SolveOutcome outcome, boolean[][] solution, long nodeCount, int solutionCount, SolverStats stats) {
+        this.outcome = outcome;
+        this.solution = solution;
+        this.nodeCount = nodeCount;
+        this.solutionCount = solutionCount;
+        this.stats = stats;
+    }
+
+    public SolveOutcome getOutcome() {
+        return this.outcome;
+    }
+
+    /**
+     * @return The first solution found, or {@code null} if there was none.
+     *         Only a search that counts solutions can find one and still run out of budget.
+     */
+    public boolean[][] getSolution() {
+        return this.solution;
+    }
+
+    /**
+     * @return The number of candidate lines the search tried.
+     */
+    public long getNodeCount() {
+        return this.nodeCount;
+    }
+
+    /**
+     * @return The number of solutions found, at most the solution limit of the options.
+     *         If the search ran out of budget, there may be more.
+     */
+    public int getSolutionCount() {
+        return this.solutionCount;
+    }
+
+    public SolverStats getStats() {
+        return this.stats;
+    }
+}
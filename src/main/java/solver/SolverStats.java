@@ -0,0 +1,132 @@
+package solver;
+
+/**
+ * Counters from one solve, to tell why it took as long as it did.
+ */
+public class SolverStats {
+    private final long nodeCount;
+    private final long backtrackCount;
+    private final long constraintUpdateCount;
+    private final long skippedUpdateCount;
+    private final long eliminatedCombinationCount;
+    private final int maxDepth;
+    private final int[] initialRowPossibilityCounts;
+    private final int[] initialColPossibilityCounts;
+    private final long constructionNanos;
+    private final long searchNanos;
+    private final long transpositionProbes;
+    private final long transpositionHits;
+    private final long transpositionStores;
+
+    SolverStats(long nodeCount, long backtrackCount, long constraintUpdateCount, long skippedUpdateCount,
+                long eliminatedCombinationCount, int maxDepth,
+                int[] initialRowPossibilityCounts, int[] initialColPossibilityCounts,
+                long constructionNanos, long searchNanos, TranspositionTable transpositionTable) {
+        this.nodeCount = nodeCount;
+        this.backtrackCount = backtrackCount;
+        this.constraintUpdateCount = constraintUpdateCount;
+        this.skippedUpdateCount = skippedUpdateCount;
+        this.eliminatedCombinationCount = eliminatedCombinationCount;
+        this.maxDepth = maxDepth;
+        this.initialRowPossibilityCounts = initialRowPossibilityCounts;
+        this.initialColPossibilityCounts = initialColPossibilityCounts;
+        this.constructionNanos = constructionNanos;
+        this.searchNanos = searchNanos;
+        this.transpositionProbes = transpositionTable == null ? 0 : transpositionTable.getProbeCount();
+        this.transpositionHits = transpositionTable == null ? 0 : transpositionTable.getHitCount();
+        this.transpositionStores = transpositionTable == null ? 0 : transpositionTable.getStoreCount();
+    }
+
+    /**
+     * @return The number of candidates the search tried, as counted against the node budget.
+     */
+    public long getNodeCount() {
+        return this.nodeCount;
+    }
+
+    /**
+     * @return The number of candidates that were undone because they led to no solution.
+     */
+    public long getBacktrackCount() {
+        return this.backtrackCount;
+    }
+
+    /**
+     * @return The number of times a line constraint was updated to a newly decided cell.
+     */
+    public long getConstraintUpdateCount() {
+        return this.constraintUpdateCount;
+    }
+
+    /**
+     * @return The number of crossing constraints not updated when a line was filled in,
+     *         because their cell had already been decided.
+     */
+    public long getSkippedUpdateCount() {
+        return this.skippedUpdateCount;
+    }
+
+    /**
+     * @return The number of combinations those updates ruled out, including ones later restored by backtracking.
+     */
+    public long getEliminatedCombinationCount() {
+        return this.eliminatedCombinationCount;
+    }
+
+    /**
+     * @return The largest number of branches taken on one path of the search.
+     */
+    public int getMaxDepth() {
+        return this.maxDepth;
+    }
+
+    /**
+     * @return The number of combinations of each row, given only the crosses the puzzle started with.
+     */
+    public int[] getInitialRowPossibilityCounts() {
+        return this.initialRowPossibilityCounts;
+    }
+
+    public int[] getInitialColPossibilityCounts() {
+        return this.initialColPossibilityCounts;
+    }
+
+    /**
+     * @return The time taken to build the board and its constraints.
+     */
+    public long getConstructionNanos() {
+        return this.constructionNanos;
+    }
+
+    /**
+     * @return The time taken by propagation and search.
+     */
+    public long getSearchNanos() {
+        return this.searchNanos;
+    }
+
+    /**
+     * @return The number of search nodes looked up in the transposition table.
+     */
+    public long getTranspositionProbes() {
+        return this.transpositionProbes;
+    }
+
+    /**
+     * @return The number of search nodes skipped, because the transposition table knew they fail.
+     */
+    public long getTranspositionHits() {
+        return this.transpositionHits;
+    }
+
+    /**
+     * @return The number of failed search nodes recorded in the transposition table.
+     */
+    public long getTranspositionStores() {
+        return this.transpositionStores;
+    }
+
+    public double getTranspositionHitRate() {
+        return this.transpositionProbes == 0 ? 0 : (double) this.transpositionHits / this.transpositionProbes;
+    }
+}
@@ -0,0 +1,71 @@
+package solver;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Remembers the components of the board, by their Zobrist hash, that the search is known to find no solution for,
+ * so that reaching one again through other choices elsewhere on the board skips its whole subtree.
+ * The table has a fixed number of entries in buckets of two, and a new entry replaces
+ * whichever of its bucket took fewer nodes to search.
+ * It is shared by all copies of the board in a parallel solve, where a lost race only loses an entry.
+ */
+class TranspositionTable {
+    private final AtomicLongArray keys;
+    private final AtomicIntegerArray costs;
+    private final int mask;
+    private final AtomicLong probeCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong storeCount = new AtomicLong();
+
+    /**
+     * @param capacity The number of entries, rounded up to a power of two.
+     */
+    TranspositionTable(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.keys = new AtomicLongArray(size);
+        this.costs = new AtomicIntegerArray(size);
+        this.mask = size - 2;
+    }
+
+    /**
+     * @return {@code true} if the component is known to have no solution.
+     */
+    boolean contains(long hash) {
+        this.probeCount.incrementAndGet();
+        int bucket = (int) hash & this.mask;
+        if (hash != 0 && (this.keys.getOpaque(bucket) == hash || this.keys.getOpaque(bucket + 1) == hash)) {
+            this.hitCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records that the component has no solution.
+     * @param cost The number of nodes it took to find out.
+     */
+    void store(long hash, long cost) {
+        if (hash == 0) {
+            return;
+        }
+        int bucket = (int) hash & this.mask;
+        int slot = this.costs.getOpaque(bucket) <= this.costs.getOpaque(bucket + 1) ? bucket : bucket + 1;
+        this.keys.setOpaque(slot, hash);
+        this.costs.setOpaque(slot, (int) Math.min(cost, Integer.MAX_VALUE));
+        this.storeCount.incrementAndGet();
+    }
+
+    long getProbeCount() {
+        return this.probeCount.get();
+    }
+
+    long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    long getStoreCount() {
+        return this.storeCount.get();
+    }
+}
@@ -0,0 +1,8 @@
+package solver.exceptions;
+
+/**
+ * Thrown when a clue has more combinations on its line than a {@link solver.CombinationTable} may list.
+ */
+public class TooManyCombinationsException extends InvalidConstraintException {
+    private static final long serialVersionUID = 1L;
+}
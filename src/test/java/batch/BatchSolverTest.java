@@ -0,0 +1,62 @@
+package batch;
+
+import org.junit.Assert;
+import org.junit.Test;
+import solver.SolveOptions;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class BatchSolverTest {
+    @Test
+    public void testSolveAll() throws Exception {
+        List<BatchSolver.Puzzle> puzzles = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            if (i % 10 == 0) {
+                puzzles.add(new BatchSolver.Puzzle(String.valueOf(i), new boolean[1][2], new int[][] {{3}}, new int[][] {{1}, {1}}));
+            } else {
+                puzzles.add(new BatchSolver.Puzzle(String.valueOf(i), new boolean[2][3],
+                        new int[][] {{2}, {1}}, new int[][] {{1}, {2}, {}}));
+            }
+        }
+
+        Set<String> ids = new HashSet<>();
+        BatchSolver.Summary summary;
+        try (BatchSolver batchSolver = new BatchSolver(3, 2, SolveOptions.DEFAULT)) {
+            summary = batchSolver.solveAll(puzzles.iterator(), result -> {
+                Assert.assertTrue(ids.add(result.id));
+                Assert.assertEquals(Integer.parseInt(result.id) % 10 != 0, result.success);
+            });
+        }
+        Assert.assertEquals(200, ids.size());
+        Assert.assertEquals(200, summary.count);
+        Assert.assertEquals(180, summary.solved);
+    }
+
+    @Test
+    public void testClosed() throws Exception {
+        BatchSolver batchSolver = new BatchSolver(1, 1, SolveOptions.DEFAULT);
+        batchSolver.close();
+        List<BatchSolver.Puzzle> puzzles = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            puzzles.add(new BatchSolver.Puzzle(String.valueOf(i), new boolean[1][1], new int[][] {{1}}, new int[][] {{1}}));
+        }
+        List<BatchSolver.Result> results = new ArrayList<>();
+        BatchSolver.Summary summary = batchSolver.solveAll(puzzles.iterator(), results::add);
+        Assert.assertEquals(5, summary.count);
+        Assert.assertEquals(0, summary.solved);
+        Assert.assertEquals("Solver is closed", results.get(0).error);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoThreads() {
+        new BatchSolver(0, 1, SolveOptions.DEFAULT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeQueueCapacity() {
+        new BatchSolver(2, -2, SolveOptions.DEFAULT);
+    }
+}
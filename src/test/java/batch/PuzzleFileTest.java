@@ -0,0 +1,84 @@
+package batch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PuzzleFileTest {
+    @Test
+    public void testRoundTrip() throws Exception {
+        List<BatchSolver.Puzzle> puzzles = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            boolean[][] board = new boolean[2][3];
+            board[i % 2][i % 3] = i % 4 == 0;
+            puzzles.add(new BatchSolver.Puzzle(i % 5 == 0 ? null : "puzzle-" + i, board,
+                    new int[][] {{2}, {1}}, new int[][] {{1}, {200 + i, 1}, {}}));
+        }
+
+        Path path = Files.createTempFile("puzzles", ".nono");
+        try {
+            try (PuzzleFileWriter writer = new PuzzleFileWriter(Files.newOutputStream(path))) {
+                for (BatchSolver.Puzzle puzzle: puzzles) {
+                    writer.write(puzzle);
+                }
+                Assert.assertTrue(writer.getByteCount() < 50 * 25);
+            }
+            Assert.assertTrue(MappedPuzzleReader.isPuzzleFile(path));
+
+            // a small window makes puzzles cross from one mapping into the next
+            try (MappedPuzzleReader reader = new MappedPuzzleReader(path, 32)) {
+                for (int i = 0; i < puzzles.size(); i++) {
+                    Assert.assertTrue(reader.hasNext());
+                    BatchSolver.Puzzle expected = puzzles.get(i);
+                    BatchSolver.Puzzle actual = reader.next();
+                    Assert.assertEquals(expected.id == null ? String.valueOf(i + 1) : expected.id, actual.id);
+                    Assert.assertArrayEquals(expected.board, actual.board);
+                    Assert.assertArrayEquals(expected.rowConstraints, actual.rowConstraints);
+                    Assert.assertArrayEquals(expected.colConstraints, actual.colConstraints);
+                }
+                Assert.assertFalse(reader.hasNext());
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testCorrupt() throws Exception {
+        Path path = Files.createTempFile("puzzles", ".nono");
+        try {
+            try (PuzzleFileWriter writer = new PuzzleFileWriter(Files.newOutputStream(path))) {
+                writer.write(new BatchSolver.Puzzle("a", new boolean[1][1], new int[][] {{1}}, new int[][] {{1}}));
+            }
+            try (OutputStream outputStream = Files.newOutputStream(path, StandardOpenOption.APPEND)) {
+                outputStream.write(new byte[] {100, 1, 'b'});
+            }
+            try (MappedPuzzleReader reader = new MappedPuzzleReader(path)) {
+                Assert.assertEquals("a", reader.next().id);
+                reader.next();
+                Assert.fail();
+            } catch (UncheckedIOException e) {
+                Assert.assertEquals("Corrupt puzzle 2 at byte 15", e.getCause().getMessage());
+            }
+
+            Files.write(path, new byte[] {'{', '}'});
+            Assert.assertFalse(MappedPuzzleReader.isPuzzleFile(path));
+            try {
+                new MappedPuzzleReader(path).close();
+                Assert.fail();
+            } catch (IOException e) {
+                // expected
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
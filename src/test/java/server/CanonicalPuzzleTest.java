@@ -0,0 +1,51 @@
+package server;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CanonicalPuzzleTest {
+    private static final boolean[][] SOLUTION = {
+            {true, true, false},
+            {false, true, false},
+    };
+    private static final int[][] ROWS = {{2}, {1}};
+    private static final int[][] COLS = {{1}, {2}, {}};
+
+    @Test
+    public void testVariantsShareKey() {
+        CanonicalPuzzle puzzle = CanonicalPuzzle.of(new boolean[2][3], ROWS, COLS);
+
+        // transposed
+        CanonicalPuzzle transposed = CanonicalPuzzle.of(new boolean[3][2], COLS, ROWS);
+        Assert.assertEquals(puzzle.getKey(), transposed.getKey());
+        // mirrored left to right
+        CanonicalPuzzle mirrored = CanonicalPuzzle.of(new boolean[2][3],
+                new int[][] {{2}, {1}}, new int[][] {{}, {2}, {1}});
+        Assert.assertEquals(puzzle.getKey(), mirrored.getKey());
+        // clue of zero
+        CanonicalPuzzle zero = CanonicalPuzzle.of(new boolean[2][3], ROWS, new int[][] {{1}, {2}, {0}});
+        Assert.assertEquals(puzzle.getKey(), zero.getKey());
+
+        CanonicalPuzzle different = CanonicalPuzzle.of(new boolean[2][3], new int[][] {{1}, {1}}, COLS);
+        Assert.assertNotEquals(puzzle.getKey(), different.getKey());
+        boolean[][] crossed = new boolean[2][3];
+        crossed[0][2] = true;
+        Assert.assertNotEquals(puzzle.getKey(), CanonicalPuzzle.of(crossed, ROWS, COLS).getKey());
+    }
+
+    @Test
+    public void testSolutionRoundTrip() {
+        CanonicalPuzzle puzzle = CanonicalPuzzle.of(new boolean[2][3], ROWS, COLS);
+        boolean[][] canonical = puzzle.toCanonical(SOLUTION);
+        Assert.assertArrayEquals(SOLUTION, puzzle.fromCanonical(canonical));
+
+        boolean[][] transposedSolution = new boolean[3][2];
+        for (int i = 0; i < 2; i++) {
+            for (int j = 0; j < 3; j++) {
+                transposedSolution[j][i] = SOLUTION[i][j];
+            }
+        }
+        CanonicalPuzzle transposed = CanonicalPuzzle.of(new boolean[3][2], COLS, ROWS);
+        Assert.assertArrayEquals(transposedSolution, transposed.fromCanonical(canonical));
+    }
+}
@@ -0,0 +1,126 @@
+package server;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import solver.exceptions.InvalidConstraintException;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.RejectedExecutionException;
+
+public class JobManagerTest {
+    /**
+     * Fails a test whose job never starts or finishes, rather than waiting for it forever.
+     */
+    private static final long TIMEOUT_MILLIS = 60000;
+
+    @Test(timeout = TIMEOUT_MILLIS)
+    public void testJobs() throws Exception {
+        try (JobManager jobManager = createJobManager(1, 1, "")) {
+            JobManager.JobStatus counted = jobManager.submit(new boolean[6][6], ones(6), ones(6), 1000, 0);
+            counted = waitUntilFinished(jobManager, counted.id);
+            Assert.assertEquals(JobManager.Status.SOLVED, counted.status);
+            Assert.assertEquals(720, (int) counted.solutionCount);
+            Assert.assertTrue(counted.progress.getNodeCount() > 0);
+
+            try {
+                jobManager.submit(new boolean[2][2], new int[][] {{3}, {1}}, ones(2), 1, 0);
+                Assert.fail();
+            } catch (InvalidConstraintException e) {
+                // expected
+            }
+
+            // one job runs and one waits, so the next one is refused
+            JobManager.JobStatus running = jobManager.submit(new boolean[10][10], ones(10), ones(10), 10000000, 0);
+            waitUntilRunning(jobManager, running.id);
+            JobManager.JobStatus queued = jobManager.submit(new boolean[6][6], ones(6), ones(6), 1, 0);
+            try {
+                jobManager.submit(new boolean[6][6], ones(6), ones(6), 1, 0);
+                Assert.fail();
+            } catch (RejectedExecutionException e) {
+                // expected
+            }
+            // a refused job is refused before its puzzle is looked at
+            try {
+                jobManager.submit(new boolean[2][2], new int[][] {{3}, {1}}, ones(2), 1, 0);
+                Assert.fail();
+            } catch (RejectedExecutionException e) {
+                // expected
+            }
+            Assert.assertEquals(JobManager.Status.QUEUED, jobManager.get(queued.id).status);
+            Assert.assertEquals(JobManager.Status.CANCELLED, jobManager.cancel(queued.id).status);
+            jobManager.cancel(running.id);
+            Assert.assertEquals(JobManager.Status.CANCELLED, waitUntilFinished(jobManager, running.id).status);
+
+            // cancelling a finished job forgets it
+            jobManager.cancel(counted.id);
+            Assert.assertNull(jobManager.get(counted.id));
+            Assert.assertNull(jobManager.cancel(counted.id));
+        }
+    }
+
+    @Test(timeout = TIMEOUT_MILLIS)
+    public void testResumeAfterRestart() throws Exception {
+        Path directory = Files.createTempDirectory("jobs");
+        try {
+            String id;
+            try (JobManager jobManager = createJobManager(1, 10, directory.toString())) {
+                id = jobManager.submit(new boolean[10][10], ones(10), ones(10), 10000000, 0).id;
+                waitUntilRunning(jobManager, id);
+                while (jobManager.get(id).progress.getNodeCount() < 1000) {
+                    Thread.sleep(10);
+                }
+            }
+            Path path = directory.resolve(id + ".checkpoint");
+            Assert.assertTrue(Files.exists(path));
+
+            try (JobManager jobManager = createJobManager(1, 10, directory.toString())) {
+                Assert.assertTrue(jobManager.get(id).resumed);
+                waitUntilRunning(jobManager, id);
+                jobManager.cancel(id);
+                Assert.assertEquals(JobManager.Status.CANCELLED, waitUntilFinished(jobManager, id).status);
+                Assert.assertTrue(jobManager.get(id).progress.getNodeCount() >= 1000);
+            }
+            Assert.assertFalse(Files.exists(path));
+        } finally {
+            try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+                for (Path path: paths) {
+                    Files.delete(path);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private static JobManager createJobManager(int threadCount, int queueCapacity, String checkpointDirectory)
+            throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        return new JobManager(threadCount, queueCapacity, Duration.ZERO, Duration.ofHours(1), checkpointDirectory,
+                Duration.ofMillis(20), new SolveMetrics(registry), registry);
+    }
+
+    private static void waitUntilRunning(JobManager jobManager, String id) throws Exception {
+        while (jobManager.get(id).progress == null) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static JobManager.JobStatus waitUntilFinished(JobManager jobManager, String id) throws Exception {
+        JobManager.JobStatus status = jobManager.get(id);
+        while (status.status == JobManager.Status.QUEUED || status.status == JobManager.Status.RUNNING) {
+            Thread.sleep(10);
+            status = jobManager.get(id);
+        }
+        return status;
+    }
+
+    private static int[][] ones(int size) {
+        int[][] clues = new int[size][];
+        Arrays.fill(clues, new int[] {1});
+        return clues;
+    }
+}
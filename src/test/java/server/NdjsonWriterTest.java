@@ -0,0 +1,60 @@
+package server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import solver.Board;
+import solver.SolveOptions;
+import solver.SolveResult;
+import solver.Step;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class NdjsonWriterTest {
+    /**
+     * Keeps what is sent instead of writing it to a response.
+     */
+    private static class RecordingEmitter extends ResponseBodyEmitter {
+        private final List<String> sent = new ArrayList<>();
+
+        @Override
+        public void send(Object object, MediaType mediaType) {
+            this.sent.add(new String((byte[]) object, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testEachStepIsSentAsALine() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        RecordingEmitter emitter = new RecordingEmitter();
+        NdjsonWriter<Step> writer = new NdjsonWriter<>(objectMapper, new EmitterOutputStream(emitter));
+        int[] stepCount = {0};
+        int[][] rowConstraints = {{2}, {1}, {3}};
+        int[][] colConstraints = {{1, 1}, {3}, {1}};
+        SolveResult result = new Board(new boolean[3][3], rowConstraints, colConstraints).solve(step -> {
+            // every step before this one has reached the client, whole
+            Assert.assertEquals(stepCount[0], emitter.sent.size());
+            writer.accept(step);
+            stepCount[0]++;
+        }, SolveOptions.DEFAULT);
+        Assert.assertNotNull(result.getSolution());
+        Assert.assertTrue(stepCount[0] > 0);
+        writer.finish(result.getSolution());
+
+        Assert.assertEquals(stepCount[0] + 1, emitter.sent.size());
+        for (String line: emitter.sent) {
+            Assert.assertTrue(line.startsWith("{") || line.startsWith("["));
+            Assert.assertTrue(line.endsWith("\n"));
+            Assert.assertEquals(line.length() - 1, line.indexOf('\n'));
+        }
+        JsonNode firstStep = objectMapper.readTree(emitter.sent.get(0));
+        Assert.assertEquals(3, firstStep.get("board").size());
+        JsonNode solution = objectMapper.readTree(emitter.sent.get(stepCount[0]));
+        Assert.assertTrue(solution.isArray());
+    }
+}
@@ -0,0 +1,64 @@
+package server;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+
+public class SolutionCacheTest {
+    private static final boolean[][] SOLUTION = {
+            {true, true, false},
+            {false, true, false},
+    };
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SolutionCache cache = new SolutionCache(2, Duration.ofHours(1), registry);
+        cache.put("a", SOLUTION);
+        cache.put("b", null);
+        // using a makes b the least recently used
+        Assert.assertArrayEquals(SOLUTION, cache.get("a").getSolution());
+        cache.put("c", SOLUTION);
+
+        Assert.assertNull(cache.get("b"));
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertNotNull(cache.get("c"));
+
+        SolutionCache.Stats stats = cache.getStats();
+        Assert.assertEquals(2, stats.size);
+        Assert.assertEquals(2, stats.maxSize);
+        Assert.assertEquals(3, stats.hits);
+        Assert.assertEquals(1, stats.misses);
+        Assert.assertEquals(1, stats.evictions);
+        Assert.assertEquals(0, stats.expirations);
+        Assert.assertEquals(3, registry.get("nonogram.cache.gets").tag("result", "hit").functionCounter().count(), 0);
+        Assert.assertEquals(1, registry.get("nonogram.cache.gets").tag("result", "miss").functionCounter().count(), 0);
+        Assert.assertEquals(1, registry.get("nonogram.cache.evictions").tag("cause", "size").functionCounter().count(), 0);
+        Assert.assertEquals(2, registry.get("nonogram.cache.size").gauge().value(), 0);
+    }
+
+    @Test
+    public void testExpiry() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SolutionCache cache = new SolutionCache(10, Duration.ZERO, registry);
+        cache.put("a", SOLUTION);
+        Assert.assertNull(cache.get("a"));
+
+        SolutionCache.Stats stats = cache.getStats();
+        Assert.assertEquals(0, stats.size);
+        Assert.assertEquals(0, stats.hits);
+        Assert.assertEquals(1, stats.misses);
+        Assert.assertEquals(1, stats.expirations);
+        Assert.assertEquals(1, registry.get("nonogram.cache.evictions").tag("cause", "expired").functionCounter().count(), 0);
+    }
+
+    @Test
+    public void testDisabled() {
+        SolutionCache cache = new SolutionCache(0, Duration.ofHours(1), new SimpleMeterRegistry());
+        cache.put("a", SOLUTION);
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals(0, cache.getStats().size);
+    }
+}
@@ -0,0 +1,101 @@
+package server;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+public class SolutionStoreTest {
+    private static final boolean[][] SOLUTION = {
+            {true, true, false},
+            {false, true, false},
+    };
+
+    @Test
+    public void testReopen() throws Exception {
+        Path directory = Files.createTempDirectory("store");
+        Path path = directory.resolve("solutions.log");
+        String solvedKey = key(1);
+        String unsolvableKey = key(2);
+        try {
+            try (SolutionStore store = new SolutionStore(path.toString(), Duration.ofMillis(10), new SimpleMeterRegistry())) {
+                Assert.assertNull(store.get(solvedKey));
+                store.put(solvedKey, SOLUTION);
+                store.put(unsolvableKey, null);
+                Assert.assertArrayEquals(SOLUTION, store.get(solvedKey).getSolution());
+            }
+
+            // a record cut off by a crash is dropped, and the ones before it are kept
+            long size = Files.size(path);
+            try (OutputStream outputStream = Files.newOutputStream(path, StandardOpenOption.APPEND)) {
+                outputStream.write(new byte[] {0, 0, 0, 50, 1, 2, 3});
+            }
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            try (SolutionStore store = new SolutionStore(path.toString(), Duration.ZERO, registry)) {
+                Assert.assertEquals(size, Files.size(path));
+                Assert.assertArrayEquals(SOLUTION, store.get(solvedKey).getSolution());
+                Assert.assertNull(store.get(unsolvableKey).getSolution());
+                Assert.assertNull(store.get(key(3)));
+                Assert.assertEquals(2, store.getStats().size);
+                Assert.assertEquals(2, store.getStats().hits);
+                Assert.assertEquals(2, registry.get("nonogram.store.gets").tag("result", "hit").functionCounter().count(), 0);
+                Assert.assertEquals(1, registry.get("nonogram.store.gets").tag("result", "miss").functionCounter().count(), 0);
+            }
+        } finally {
+            Files.deleteIfExists(path);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        Path directory = Files.createTempDirectory("store");
+        Path path = directory.resolve("solutions.log");
+        try {
+            try (SolutionStore store = new SolutionStore(path.toString(), Duration.ZERO, new SimpleMeterRegistry())) {
+                for (int k = 0; k < 10; k++) {
+                    store.put(key(k % 3), k % 2 == 0 ? SOLUTION : null);
+                }
+                long size = Files.size(path);
+                store.compact();
+                Assert.assertTrue(Files.size(path) < size);
+                Assert.assertEquals(store.getStats().liveBytes + 5, Files.size(path));
+                Assert.assertNull(store.get(key(0)).getSolution());
+                Assert.assertArrayEquals(SOLUTION, store.get(key(2)).getSolution());
+
+                store.put(key(0), SOLUTION);
+                Assert.assertArrayEquals(SOLUTION, store.get(key(0)).getSolution());
+
+                // storing the same result again does not grow the log
+                size = Files.size(path);
+                store.put(key(0), SOLUTION);
+                Assert.assertEquals(size, Files.size(path));
+            }
+            try (SolutionStore store = new SolutionStore(path.toString(), Duration.ZERO, new SimpleMeterRegistry())) {
+                Assert.assertEquals(3, store.getStats().size);
+                Assert.assertArrayEquals(SOLUTION, store.get(key(0)).getSolution());
+            }
+        } finally {
+            Files.deleteIfExists(path);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        try (SolutionStore store = new SolutionStore("", Duration.ZERO, new SimpleMeterRegistry())) {
+            store.put(key(1), SOLUTION);
+            Assert.assertNull(store.get(key(1)));
+            Assert.assertFalse(store.getStats().enabled);
+        }
+    }
+
+    private static String key(int k) {
+        return String.format("%064x", k);
+    }
+}
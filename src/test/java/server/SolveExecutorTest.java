@@ -0,0 +1,59 @@
+package server;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class SolveExecutorTest {
+    @Test
+    public void testAdmission() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        try (SolveExecutor executor = new SolveExecutor(1, 1, false, registry)) {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            CompletableFuture<Integer> running = executor.submit(() -> {
+                started.countDown();
+                release.await();
+                return 1;
+            });
+            started.await();
+            CompletableFuture<Integer> queued = executor.submit(() -> 2);
+            try {
+                executor.submit(() -> 3);
+                Assert.fail();
+            } catch (RejectedExecutionException e) {
+                Assert.assertEquals(1, registry.get("nonogram.solve.rejected").counter().count(), 0);
+            }
+
+            release.countDown();
+            Assert.assertEquals(1, (int) running.get());
+            Assert.assertEquals(2, (int) queued.get());
+
+            CompletableFuture<Integer> failed = executor.submit(() -> {
+                throw new IllegalStateException();
+            });
+            try {
+                failed.get();
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+
+            CompletableFuture<Integer> error = executor.submit(() -> {
+                throw new OutOfMemoryError();
+            });
+            try {
+                error.get(10, TimeUnit.SECONDS);
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof OutOfMemoryError);
+            }
+        }
+    }
+}
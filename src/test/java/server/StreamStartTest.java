@@ -0,0 +1,55 @@
+package server;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+public class StreamStartTest {
+    @Test(timeout = 10000)
+    public void testStarted() throws Exception {
+        HttpServletRequest request = createRequest();
+        StreamStart start = StreamStart.of(request);
+        StreamStart.Interceptor interceptor = new StreamStart.Interceptor();
+        interceptor.afterConcurrentHandlingStarted(request, null, null);
+        // the request completes again once it is done being async
+        interceptor.afterCompletion(request, null, null, null);
+        Assert.assertTrue(start.await());
+    }
+
+    @Test(timeout = 10000)
+    public void testNeverStarted() throws Exception {
+        HttpServletRequest request = createRequest();
+        StreamStart start = StreamStart.of(request);
+        new StreamStart.Interceptor().afterCompletion(request, null, null, new IllegalStateException());
+        Assert.assertFalse(start.await());
+    }
+
+    @Test
+    public void testOtherRequest() {
+        // a request without a stream is left alone
+        new StreamStart.Interceptor().afterCompletion(createRequest(), null, null, null);
+    }
+
+    /**
+     * Creates a request that only keeps its attributes.
+     */
+    private static HttpServletRequest createRequest() {
+        Map<String, Object> attributes = new HashMap<>();
+        return (HttpServletRequest) Proxy.newProxyInstance(StreamStartTest.class.getClassLoader(),
+                new Class<?>[] {HttpServletRequest.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getAttribute":
+                            return attributes.get((String) args[0]);
+                        case "setAttribute":
+                            attributes.put((String) args[0], args[1]);
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
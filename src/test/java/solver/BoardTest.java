@@ -0,0 +1,420 @@
+package solver;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+public class BoardTest {
+    @Test
+    public void testSolvedByPropagation() throws Exception {
+        Board board = new Board(
+                new boolean[5][5],
+                new int[][] {{1, 1}, {5}, {1, 1}, {5}, {1, 1}},
+                new int[][] {{1, 1}, {5}, {1, 1}, {5}, {1, 1}});
+        boolean[][] solution = board.solve();
+        Assert.assertArrayEquals(new boolean[][] {
+                {false, true, false, true, false},
+                {true, true, true, true, true},
+                {false, true, false, true, false},
+                {true, true, true, true, true},
+                {false, true, false, true, false},
+        }, solution);
+    }
+
+    @Test
+    public void testNeedsSearch() throws Exception {
+        Board board = new Board(
+                new boolean[2][2],
+                new int[][] {{1}, {1}},
+                new int[][] {{1}, {1}});
+        boolean[][] solution = board.solve();
+        Assert.assertNotNull(solution);
+        Assert.assertNotEquals(solution[0][0], solution[0][1]);
+        Assert.assertNotEquals(solution[0][0], solution[1][0]);
+    }
+
+    @Test
+    public void testCrosses() throws Exception {
+        boolean[][] cells = new boolean[2][2];
+        cells[0][0] = true;
+        Board board = new Board(cells, new int[][] {{1}, {1}}, new int[][] {{1}, {1}});
+        Assert.assertArrayEquals(new boolean[][] {{false, true}, {true, false}}, board.solve());
+    }
+
+    @Test
+    public void testUnsolvable() throws Exception {
+        Board board = new Board(
+                new boolean[2][2],
+                new int[][] {{2}, {0}},
+                new int[][] {{2}, {0}});
+        Assert.assertNull(board.solve());
+    }
+
+    @Test
+    public void testNonSquare() throws Exception {
+        Board board = new Board(
+                new boolean[2][3],
+                new int[][] {{3}, {1}},
+                new int[][] {{1}, {2}, {1}});
+        Assert.assertArrayEquals(new boolean[][] {{true, true, true}, {false, true, false}}, board.solve());
+    }
+
+    @Test
+    public void testConstraintTypes() throws Exception {
+        int[][] rowConstraints = {{1, 1}, {3}, {1}, {2, 1}};
+        int[][] colConstraints = {{1, 1}, {1, 1}, {3}, {1, 1}};
+        for (Board.ConstraintType type: Board.ConstraintType.values()) {
+            Board board = new Board(new boolean[4][4], rowConstraints, colConstraints, type);
+            Assert.assertArrayEquals(new boolean[][] {
+                    {true, false, true, false},
+                    {false, true, true, true},
+                    {false, false, true, false},
+                    {true, true, false, true},
+            }, board.solve());
+        }
+    }
+
+    @Test
+    public void testManyCombinations() throws Exception {
+        // few combinations fit the crosses, but the clue has millions on the whole line
+        boolean[][] cells = new boolean[1][60];
+        int[][] colConstraints = new int[60][];
+        boolean[][] solution = new boolean[1][60];
+        for (int j = 0; j < 60; j++) {
+            cells[0][j] = j >= 12;
+            solution[0][j] = j < 12 && j % 2 == 0;
+            colConstraints[j] = new int[] {solution[0][j] ? 1 : 0};
+        }
+        for (Board.ConstraintType type: Board.ConstraintType.values()) {
+            Board board = new Board(cells, new int[][] {{1, 1, 1, 1, 1, 1}}, colConstraints, type);
+            Assert.assertArrayEquals(solution, board.solve());
+        }
+    }
+
+    @Test
+    public void testSolveParallel() throws Exception {
+        int[][] rowConstraints = {{1, 1}, {3}, {1}, {2, 1}};
+        int[][] colConstraints = {{1, 1}, {1, 1}, {3}, {1, 1}};
+        Board board = new Board(new boolean[4][4], rowConstraints, colConstraints);
+        Assert.assertArrayEquals(new boolean[][] {
+                {true, false, true, false},
+                {false, true, true, true},
+                {false, false, true, false},
+                {true, true, false, true},
+        }, board.solveParallel(4));
+
+        Board unsolvable = new Board(new boolean[2][2], new int[][] {{2}, {0}}, new int[][] {{1}, {0}});
+        Assert.assertNull(unsolvable.solveParallel(4));
+
+        // each branch is solved by propagation alone, one level down
+        int[][] ones = {{1}, {1}};
+        Board branching = new Board(new boolean[2][2], ones, ones);
+        Assert.assertEquals(1, branching.solveParallel(4, SolveOptions.DEFAULT).getStats().getMaxDepth());
+        Assert.assertEquals(2, branching.countSolutions(10));
+    }
+
+    @Test
+    public void testDeltaSteps() throws Exception {
+        boolean[][] grid = this.randomGrid(new Random(3), 10, 12);
+        int[][] rowConstraints = this.toRowClues(grid);
+        int[][] colConstraints = this.toColClues(grid);
+
+        List<Step> fullSteps = new ArrayList<>();
+        new Board(new boolean[10][12], rowConstraints, colConstraints).solve(fullSteps::add);
+        List<Step> deltaSteps = new ArrayList<>();
+        new Board(new boolean[10][12], rowConstraints, colConstraints).solve(deltaSteps::add, 7);
+
+        Assert.assertEquals(fullSteps.size(), deltaSteps.size());
+        DeltaStepDecoder decoder = new DeltaStepDecoder();
+        for (int i = 0; i < fullSteps.size(); i++) {
+            Assert.assertEquals(i % 7 == 0, deltaSteps.get(i).board != null);
+            Step decoded = decoder.decode(deltaSteps.get(i));
+            Assert.assertArrayEquals(fullSteps.get(i).board, decoded.board);
+            Assert.assertEquals(fullSteps.get(i).constraintInfo.isRow, decoded.constraintInfo.isRow);
+            Assert.assertEquals(fullSteps.get(i).constraintInfo.index, decoded.constraintInfo.index);
+        }
+    }
+
+    @Test
+    public void testSolveBudget() throws Exception {
+        boolean[][] grid = this.randomGrid(new Random(11), 20, 20);
+        int[][] rowConstraints = this.toRowClues(grid);
+        int[][] colConstraints = this.toColClues(grid);
+
+        SolveResult unlimited = new Board(new boolean[20][20], rowConstraints, colConstraints)
+                .solve(null, SolveOptions.DEFAULT);
+        Assert.assertEquals(SolveOutcome.SOLVED, unlimited.getOutcome());
+        Assert.assertTrue(unlimited.getNodeCount() > 64);
+
+        SolveResult limited = new Board(new boolean[20][20], rowConstraints, colConstraints)
+                .solve(null, SolveOptions.DEFAULT.withMaxNodes(unlimited.getNodeCount() / 2));
+        Assert.assertEquals(SolveOutcome.BUDGET_EXHAUSTED, limited.getOutcome());
+        Assert.assertNull(limited.getSolution());
+        Assert.assertEquals(unlimited.getNodeCount() / 2, limited.getNodeCount());
+
+        SolveResult timedOut = new Board(new boolean[20][20], rowConstraints, colConstraints)
+                .solve(null, SolveOptions.DEFAULT.withTimeout(Duration.ZERO));
+        Assert.assertEquals(SolveOutcome.BUDGET_EXHAUSTED, timedOut.getOutcome());
+
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        SolveResult cancelled = new Board(new boolean[20][20], rowConstraints, colConstraints)
+                .solve(null, SolveOptions.DEFAULT.withCancellationToken(token));
+        Assert.assertEquals(SolveOutcome.CANCELLED, cancelled.getOutcome());
+
+        SolveResult parallel = new Board(new boolean[20][20], rowConstraints, colConstraints)
+                .solveParallel(2, SolveOptions.DEFAULT.withMaxNodes(10));
+        Assert.assertEquals(SolveOutcome.BUDGET_EXHAUSTED, parallel.getOutcome());
+
+        Board unsolvable = new Board(new boolean[2][2], new int[][] {{2}, {0}}, new int[][] {{1}, {0}});
+        Assert.assertEquals(SolveOutcome.UNSOLVABLE,
+                unsolvable.solve(null, SolveOptions.DEFAULT.withMaxNodes(10)).getOutcome());
+    }
+
+    @Test
+    public void testCountSolutions() throws Exception {
+        int[][] ones = {{1}, {1}, {1}};
+        // one cell in each row and column, in any of the 3! arrangements
+        Assert.assertEquals(6, new Board(new boolean[3][3], ones, ones).countSolutions(100));
+        Assert.assertEquals(2, new Board(new boolean[3][3], ones, ones).countSolutions(2));
+
+        int[][] rowConstraints = {{1, 1}, {3}, {1}, {2, 1}};
+        int[][] colConstraints = {{1, 1}, {1, 1}, {3}, {1, 1}};
+        Assert.assertEquals(1, new Board(new boolean[4][4], rowConstraints, colConstraints).countSolutions(2));
+        Assert.assertEquals(1, new Board(new boolean[2][2], new int[][] {{1}, {0}}, new int[][] {{1}, {0}})
+                .countSolutions(2));
+        Assert.assertEquals(0, new Board(new boolean[2][2], new int[][] {{2}, {0}}, new int[][] {{1}, {0}})
+                .countSolutions(2));
+
+        SolveResult result = new Board(new boolean[3][3], ones, ones)
+                .solve(null, SolveOptions.DEFAULT.withSolutionLimit(10));
+        Assert.assertEquals(SolveOutcome.SOLVED, result.getOutcome());
+        Assert.assertEquals(6, result.getSolutionCount());
+        Assert.assertNotNull(result.getSolution());
+    }
+
+    @Test
+    public void testSolverStats() throws Exception {
+        boolean[][] grid = this.randomGrid(new Random(11), 20, 20);
+        int[][] rowConstraints = this.toRowClues(grid);
+        int[][] colConstraints = this.toColClues(grid);
+
+        SolverStats stats = new Board(new boolean[20][20], rowConstraints, colConstraints)
+                .solve(null, SolveOptions.DEFAULT).getStats();
+        Assert.assertTrue(stats.getNodeCount() > 0);
+        Assert.assertTrue(stats.getBacktrackCount() > 0);
+        Assert.assertTrue(stats.getBacktrackCount() < stats.getNodeCount());
+        Assert.assertTrue(stats.getConstraintUpdateCount() > stats.getNodeCount());
+        Assert.assertTrue(stats.getSkippedUpdateCount() > 0);
+        Assert.assertTrue(stats.getEliminatedCombinationCount() > 0);
+        Assert.assertTrue(stats.getMaxDepth() > 0);
+        Assert.assertEquals(20, stats.getInitialRowPossibilityCounts().length);
+        Assert.assertEquals(new Constraint(rowConstraints[0], new Line(20)).possibilityCount(),
+                stats.getInitialRowPossibilityCounts()[0]);
+        Assert.assertTrue(stats.getSearchNanos() > 0);
+
+        SolverStats parallelStats = new Board(new boolean[20][20], rowConstraints, colConstraints)
+                .solveParallel(2, SolveOptions.DEFAULT).getStats();
+        Assert.assertTrue(parallelStats.getConstraintUpdateCount() > 0);
+        Assert.assertTrue(parallelStats.getSkippedUpdateCount() > 0);
+        Assert.assertTrue(parallelStats.getMaxDepth() > 0);
+    }
+
+    @Test
+    public void testBranchingStrategies() throws Exception {
+        SolveOptions cellBranching = SolveOptions.DEFAULT.withBranchingStrategy(BranchingStrategy.MOST_CONSTRAINED_CELL);
+        int[][] ones = {{1}, {1}, {1}};
+        Assert.assertEquals(6, new Board(new boolean[3][3], ones, ones)
+                .solve(null, cellBranching.withSolutionLimit(100)).getSolutionCount());
+
+        Random random = new Random(5);
+        for (int k = 0; k < 10; k++) {
+            boolean[][] grid = this.randomGrid(random, 12, 12);
+            int[][] rowConstraints = this.toRowClues(grid);
+            int[][] colConstraints = this.toColClues(grid);
+
+            SolveResult result = new Board(new boolean[12][12], rowConstraints, colConstraints)
+                    .solve(null, cellBranching);
+            Assert.assertEquals(SolveOutcome.SOLVED, result.getOutcome());
+            Assert.assertArrayEquals(rowConstraints, this.toRowClues(result.getSolution()));
+            Assert.assertArrayEquals(colConstraints, this.toColClues(result.getSolution()));
+            Assert.assertEquals(
+                    new Board(new boolean[12][12], rowConstraints, colConstraints).countSolutions(20),
+                    new Board(new boolean[12][12], rowConstraints, colConstraints)
+                            .solve(null, cellBranching.withSolutionLimit(20)).getSolutionCount());
+
+            SolveOptions mostLikelyFirst = SolveOptions.DEFAULT.withCandidateOrder(CandidateOrder.MOST_LIKELY_FIRST);
+            result = new Board(new boolean[12][12], rowConstraints, colConstraints).solve(null, mostLikelyFirst);
+            Assert.assertArrayEquals(rowConstraints, this.toRowClues(result.getSolution()));
+            Assert.assertArrayEquals(colConstraints, this.toColClues(result.getSolution()));
+            Assert.assertEquals(
+                    new Board(new boolean[12][12], rowConstraints, colConstraints).countSolutions(20),
+                    new Board(new boolean[12][12], rowConstraints, colConstraints)
+                            .solve(null, mostLikelyFirst.withSolutionLimit(20)).getSolutionCount());
+        }
+
+        Board unsolvable = new Board(new boolean[2][2], new int[][] {{2}, {0}}, new int[][] {{1}, {0}});
+        Assert.assertEquals(SolveOutcome.UNSOLVABLE, unsolvable.solve(null, cellBranching).getOutcome());
+    }
+
+    @Test
+    public void testTranspositionTable() throws Exception {
+        Random random = new Random(3);
+        SolveOptions withoutTable = SolveOptions.DEFAULT.withTranspositionTableSize(0);
+        long probes = 0;
+        for (int k = 0; k < 20; k++) {
+            boolean[][] grid = this.randomGrid(random, 10, 10);
+            int[][] rowConstraints = this.toRowClues(grid);
+            int[][] colConstraints = this.toColClues(grid);
+
+            SolveResult result = new Board(new boolean[10][10], rowConstraints, colConstraints)
+                    .solve(null, SolveOptions.DEFAULT);
+            Assert.assertEquals(SolveOutcome.SOLVED, result.getOutcome());
+            Assert.assertArrayEquals(rowConstraints, this.toRowClues(result.getSolution()));
+            Assert.assertArrayEquals(colConstraints, this.toColClues(result.getSolution()));
+            probes += result.getStats().getTranspositionProbes();
+
+            SolveResult counted = new Board(new boolean[10][10], rowConstraints, colConstraints)
+                    .solve(null, SolveOptions.DEFAULT.withSolutionLimit(50));
+            SolveResult countedWithoutTable = new Board(new boolean[10][10], rowConstraints, colConstraints)
+                    .solve(null, withoutTable.withSolutionLimit(50));
+            Assert.assertEquals(countedWithoutTable.getSolutionCount(), counted.getSolutionCount());
+            Assert.assertEquals(0, countedWithoutTable.getStats().getTranspositionProbes());
+        }
+        Assert.assertTrue(probes > 0);
+
+        // sparse puzzles split into components that the search comes back to, once they are known to fail
+        random = new Random(2);
+        long hits = 0;
+        long nodes = 0;
+        long nodesWithoutTable = 0;
+        for (int k = 0; k < 20; k++) {
+            boolean[][] grid = this.randomGrid(random, 14, 14, 0.35);
+            int[][] rowConstraints = this.toRowClues(grid);
+            int[][] colConstraints = this.toColClues(grid);
+
+            SolveResult result = new Board(new boolean[14][14], rowConstraints, colConstraints)
+                    .solve(null, SolveOptions.DEFAULT);
+            SolveResult resultWithoutTable = new Board(new boolean[14][14], rowConstraints, colConstraints)
+                    .solve(null, withoutTable);
+            Assert.assertEquals(SolveOutcome.SOLVED, result.getOutcome());
+            Assert.assertEquals(SolveOutcome.SOLVED, resultWithoutTable.getOutcome());
+            hits += result.getStats().getTranspositionHits();
+            nodes += result.getNodeCount();
+            nodesWithoutTable += resultWithoutTable.getNodeCount();
+        }
+        Assert.assertTrue(hits > 0);
+        Assert.assertTrue(nodes < nodesWithoutTable);
+    }
+
+    @Test
+    public void testPauseAndResume() throws Exception {
+        boolean[][] grid = this.randomGrid(new Random(11), 20, 20);
+        int[][] rowConstraints = this.toRowClues(grid);
+        int[][] colConstraints = this.toColClues(grid);
+        SolveOptions withoutTable = SolveOptions.DEFAULT.withTranspositionTableSize(0);
+        List<SolveOptions> optionsList = List.of(
+                withoutTable,
+                withoutTable.withBranchingStrategy(BranchingStrategy.MOST_CONSTRAINED_CELL),
+                withoutTable.withSolutionLimit(20));
+        for (SolveOptions options: optionsList) {
+            SolveResult expected = new Board(new boolean[20][20], rowConstraints, colConstraints)
+                    .solve(null, options);
+
+            // pauses every few steps, and goes on each time from a snapshot on a new board
+            int[] stepCount = {0};
+            Search[] search = new Search[1];
+            Consumer<Step> consumer = step -> {
+                if (++stepCount[0] % 40 == 0 && search[0] != null) {
+                    search[0].pause();
+                }
+            };
+            search[0] = new Board(new boolean[20][20], rowConstraints, colConstraints).startSearch(consumer, options);
+            int pauseCount = 0;
+            while (!search[0].run()) {
+                pauseCount++;
+                SearchSnapshot snapshot = search[0].snapshot();
+                search[0] = null;
+                search[0] = new Board(new boolean[20][20], rowConstraints, colConstraints)
+                        .resumeSearch(snapshot, consumer, options);
+            }
+            SolveResult result = search[0].getResult();
+            Assert.assertTrue(pauseCount > 0);
+            Assert.assertEquals(expected.getOutcome(), result.getOutcome());
+            Assert.assertEquals(expected.getSolutionCount(), result.getSolutionCount());
+            Assert.assertEquals(expected.getStats().getNodeCount(), result.getStats().getNodeCount());
+            Assert.assertArrayEquals(expected.getSolution(), result.getSolution());
+        }
+
+        // a search as deep as the puzzle is wide does not need the thread's stack
+        int size = 300;
+        int[][] ones = new int[size][];
+        Arrays.fill(ones, new int[] {1});
+        SolveResult result = new Board(new boolean[size][size], ones, ones).solve(null, withoutTable);
+        Assert.assertEquals(SolveOutcome.SOLVED, result.getOutcome());
+        Assert.assertEquals(size - 1, result.getStats().getMaxDepth());
+    }
+
+    private boolean[][] randomGrid(Random random, int rowCount, int colCount, double density) {
+        boolean[][] grid = new boolean[rowCount][colCount];
+        for (boolean[] row: grid) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] = random.nextDouble() < density;
+            }
+        }
+        return grid;
+    }
+
+    private boolean[][] randomGrid(Random random, int rowCount, int colCount) {
+        boolean[][] grid = new boolean[rowCount][colCount];
+        for (boolean[] row: grid) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] = random.nextBoolean();
+            }
+        }
+        return grid;
+    }
+
+    private int[][] toRowClues(boolean[][] grid) {
+        int[][] clues = new int[grid.length][];
+        for (int i = 0; i < grid.length; i++) {
+            clues[i] = this.toClue(grid[i]);
+        }
+        return clues;
+    }
+
+    private int[][] toColClues(boolean[][] grid) {
+        int[][] clues = new int[grid[0].length][];
+        for (int j = 0; j < grid[0].length; j++) {
+            boolean[] col = new boolean[grid.length];
+            for (int i = 0; i < grid.length; i++) {
+                col[i] = grid[i][j];
+            }
+            clues[j] = this.toClue(col);
+        }
+        return clues;
+    }
+
+    private int[] toClue(boolean[] line) {
+        List<Integer> blocks = new ArrayList<>();
+        int run = 0;
+        for (boolean cell: line) {
+            if (cell) {
+                run++;
+            } else if (run > 0) {
+                blocks.add(run);
+                run = 0;
+            }
+        }
+        if (run > 0) {
+            blocks.add(run);
+        }
+        return blocks.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
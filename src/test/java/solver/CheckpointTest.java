@@ -0,0 +1,130 @@
+package solver;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+public class CheckpointTest {
+    private static final int[][] ONES = {{1}, {1}, {1}, {1}, {1}, {1}};
+    private static final SolveOptions OPTIONS = SolveOptions.DEFAULT.withTranspositionTableSize(0);
+
+    @Test
+    public void testResume() throws Exception {
+        SolveResult expected = new Board(new boolean[6][6], ONES, ONES).solve(null, OPTIONS.withSolutionLimit(1000));
+        Assert.assertEquals(720, expected.getSolutionCount());
+
+        Path directory = Files.createTempDirectory("checkpoint");
+        Path path = directory.resolve("search.checkpoint");
+        try {
+            int[] stepCount = {0};
+            Search[] search = new Search[1];
+            search[0] = new Board(new boolean[6][6], ONES, ONES).startSearch(step -> {
+                if (++stepCount[0] == 500 && search[0] != null) {
+                    search[0].pause();
+                }
+            }, OPTIONS.withSolutionLimit(1000));
+            Assert.assertFalse(search[0].run());
+            new Checkpoint(new boolean[6][6], ONES, ONES, search[0].snapshot()).write(path);
+
+            // the solution limit is the one of the saved search
+            Checkpoint checkpoint = Checkpoint.read(path);
+            Assert.assertEquals(1000, checkpoint.getSnapshot().getSolutionLimit());
+            Search resumed = checkpoint.resume(null, OPTIONS);
+            Assert.assertTrue(resumed.run());
+            Assert.assertEquals(expected.getSolutionCount(), resumed.getResult().getSolutionCount());
+            Assert.assertEquals(expected.getNodeCount(), resumed.getResult().getNodeCount());
+        } finally {
+            Files.deleteIfExists(path);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testResumeConstraintType() throws Exception {
+        SolveOptions options = OPTIONS.withSolutionLimit(1000).withCandidateOrder(CandidateOrder.MOST_LIKELY_FIRST);
+        for (Board.ConstraintType constraintType: Board.ConstraintType.values()) {
+            Path directory = Files.createTempDirectory("checkpoint");
+            Path path = directory.resolve("search.checkpoint");
+            try {
+                int[] stepCount = {0};
+                Search[] search = new Search[1];
+                search[0] = new Board(new boolean[6][6], ONES, ONES, constraintType).startSearch(step -> {
+                    if (++stepCount[0] == 500 && search[0] != null) {
+                        search[0].pause();
+                    }
+                }, options);
+                Assert.assertFalse(search[0].run());
+                new Checkpoint(new boolean[6][6], ONES, ONES, search[0].snapshot()).write(path);
+
+                Search resumed = Checkpoint.read(path).resume(null, OPTIONS);
+                Assert.assertTrue(resumed.run());
+                Assert.assertEquals(720, resumed.getResult().getSolutionCount());
+
+                // a board with other constraints would not fill in the same candidates
+                Board.ConstraintType otherType = constraintType == Board.ConstraintType.LAZY
+                        ? Board.ConstraintType.ENUMERATED : Board.ConstraintType.LAZY;
+                try {
+                    new Board(new boolean[6][6], ONES, ONES, otherType).resumeSearch(search[0].snapshot(), null, options);
+                    Assert.fail();
+                } catch (IllegalArgumentException e) {
+                    Assert.assertTrue(e.getMessage().startsWith("The snapshot is not of a search"));
+                }
+            } finally {
+                Files.deleteIfExists(path);
+                Files.delete(directory);
+            }
+        }
+    }
+
+    @Test
+    public void testRunSearch() throws Exception {
+        Path directory = Files.createTempDirectory("checkpoint");
+        Path path = directory.resolve("search.checkpoint");
+        try {
+            Search search = new Board(new boolean[6][6], ONES, ONES).startSearch(null, OPTIONS.withSolutionLimit(1000));
+            SolveResult result = Checkpoint.runSearch(search, new boolean[6][6], ONES, ONES, path, Duration.ofMillis(1));
+            Assert.assertEquals(720, result.getSolutionCount());
+            Assert.assertFalse(Files.exists(path));
+        } finally {
+            Files.deleteIfExists(path);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testCorrupt() throws Exception {
+        Path directory = Files.createTempDirectory("checkpoint");
+        Path path = directory.resolve("search.checkpoint");
+        try {
+            Search search = new Board(new boolean[6][6], ONES, ONES).startSearch(null, OPTIONS);
+            search.pause();
+            Assert.assertFalse(search.run());
+            new Checkpoint(new boolean[6][6], ONES, ONES, search.snapshot()).write(path);
+
+            byte[] bytes = Files.readAllBytes(path);
+            bytes[20] ^= 1;
+            Files.write(path, bytes);
+            try {
+                Checkpoint.read(path);
+                Assert.fail();
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().startsWith("Checkpoint fails its checksum"));
+            }
+
+            Files.write(path, new byte[] {'{', '}'});
+            try {
+                Checkpoint.read(path);
+                Assert.fail();
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().startsWith("Not a checkpoint"));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+            Files.delete(directory);
+        }
+    }
+}
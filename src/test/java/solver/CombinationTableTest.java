@@ -0,0 +1,67 @@
+package solver;
+
+import org.junit.Assert;
+import org.junit.Test;
+import solver.exceptions.TooManyCombinationsException;
+
+import java.util.Arrays;
+
+public class CombinationTableTest {
+    @Test
+    public void testCombinations() throws Exception {
+        CombinationTable table = CombinationTable.of(new int[] {1, 2}, 5);
+        Assert.assertEquals(3, table.size());
+        Assert.assertArrayEquals(new int[] {2, 1, 2, 2, 1}, table.toLine(0).toArray());
+        Assert.assertArrayEquals(new int[] {2, 1, 1, 2, 2}, table.toLine(1).toArray());
+        Assert.assertArrayEquals(new int[] {1, 2, 1, 2, 2}, table.toLine(2).toArray());
+
+        CombinationTable empty = CombinationTable.of(new int[] {0}, 3);
+        Assert.assertEquals(1, empty.size());
+        Assert.assertArrayEquals(new int[] {1, 1, 1}, empty.toLine(0).toArray());
+    }
+
+    @Test
+    public void testInterned() throws Exception {
+        Assert.assertSame(CombinationTable.of(new int[] {3, 1}, 12), CombinationTable.of(new int[] {3, 1}, 12));
+        Assert.assertSame(CombinationTable.of(new int[] {0}, 12), CombinationTable.of(new int[0], 12));
+        Assert.assertNotSame(CombinationTable.of(new int[] {3, 1}, 12), CombinationTable.of(new int[] {3, 1}, 13));
+    }
+
+    @Test
+    public void testTooManyCombinations() throws Exception {
+        Assert.assertEquals(3, CombinationTable.count(new int[] {1, 2}, 5));
+        Assert.assertEquals(28989675, CombinationTable.count(new int[] {1, 1, 1, 1, 1, 1}, 60));
+        Assert.assertEquals(0, CombinationTable.count(new int[] {3, 3}, 6));
+        int[] ones = new int[100];
+        Arrays.fill(ones, 1);
+        Assert.assertEquals(Long.MAX_VALUE, CombinationTable.count(ones, 5000));
+        try {
+            CombinationTable.of(new int[] {1, 1, 1, 1, 1, 1}, 60);
+            Assert.fail();
+        } catch (TooManyCombinationsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testLongLine() throws Exception {
+        // the block crosses from the first word of the line into the second
+        CombinationTable table = CombinationTable.of(new int[] {68}, 70);
+        Assert.assertEquals(3, table.size());
+        Line cells = new Line(70);
+        cells.set(0, 1);
+        Assert.assertFalse(table.isCompatible(0, cells));
+        Assert.assertTrue(table.isCompatible(2, cells));
+        cells.set(69, 1);
+        Assert.assertTrue(table.isCompatible(1, cells));
+        Assert.assertFalse(table.isCompatible(2, cells));
+
+        Line common = new Line(70);
+        table.copyTo(0, common);
+        table.intersectInto(2, common);
+        Assert.assertEquals(0, common.get(0));
+        Assert.assertEquals(2, common.get(2));
+        Assert.assertEquals(2, common.get(67));
+        Assert.assertEquals(0, common.get(69));
+    }
+}
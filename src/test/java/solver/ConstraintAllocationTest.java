@@ -0,0 +1,60 @@
+package solver;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the heap allocated per {@link LineConstraint#update(Line)} and {@link LineConstraint#undo()} pair,
+ * once the undo trail has grown to fit the workload.
+ */
+public class ConstraintAllocationTest {
+    private static final int WARM_UP_ROUNDS = 10000;
+    private static final int MEASURED_ROUNDS = 50000;
+    /**
+     * Leaves room for the odd allocation by the JVM itself on the measuring thread.
+     */
+    private static final double MAX_BYTES_PER_UPDATE = 0.01;
+
+    @Test
+    public void testConstraintUpdateDoesNotAllocate() throws Exception {
+        Line cells = new Line(20);
+        this.assertNoAllocation("Constraint", new Constraint(new int[] {2, 3, 1, 2}, cells), cells);
+    }
+
+    @Test
+    public void testLazyConstraintUpdateDoesNotAllocate() throws Exception {
+        Line cells = new Line(20);
+        this.assertNoAllocation("LazyConstraint", new LazyConstraint(new int[] {2, 3, 1, 2}, cells), cells);
+    }
+
+    private void assertNoAllocation(String name, LineConstraint constraint, Line cells) {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        this.run(constraint, cells, WARM_UP_ROUNDS);
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        this.run(constraint, cells, MEASURED_ROUNDS);
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        double bytesPerUpdate = (double) allocated / MEASURED_ROUNDS;
+        Assert.assertTrue(name + " allocates " + bytesPerUpdate + " bytes per update",
+                bytesPerUpdate < MAX_BYTES_PER_UPDATE);
+    }
+
+    private void run(LineConstraint constraint, Line cells, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            int index = round % cells.length();
+            cells.set(index, 1 + round % 2);
+            constraint.update(cells);
+            cells.set((index + 7) % cells.length(), 2);
+            constraint.update(cells);
+            constraint.undo();
+            constraint.undo();
+            cells.set(index, 0);
+            cells.set((index + 7) % cells.length(), 0);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package solver;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class LazyConstraintTest {
+    @Test
+    public void testOnePossibility() throws Exception {
+        LazyConstraint constraint = new LazyConstraint(new int[] {1, 3}, new int[] {0, 0, 0, 0, 0});
+        Assert.assertEquals(1, constraint.possibilityCount());
+        constraint.update(new Line(new int[] {2, 0, 2, 0, 0}));
+        Assert.assertEquals(1, constraint.possibilityCount());
+        constraint.undo();
+        constraint.update(new Line(new int[] {0, 2, 0, 0, 0}));
+        Assert.assertEquals(0, constraint.possibilityCount());
+        constraint.undo();
+        constraint.update(new Line(new int[] {2, 2, 1, 0, 0}));
+        Assert.assertEquals(0, constraint.possibilityCount());
+    }
+
+    @Test
+    public void testUndo() throws Exception {
+        LazyConstraint constraint = new LazyConstraint(new int[] {1, 1}, new int[] {0, 1, 0, 0, 0});
+        Assert.assertEquals(4, constraint.possibilityCount());
+        constraint.update(new Line(new int[] {2, 1, 0, 0, 1}));
+        constraint.update(new Line(new int[] {2, 1, 2, 0, 1}));
+        constraint.update(new Line(new int[] {2, 1, 2, 2, 1}));
+        Assert.assertEquals(0, constraint.possibilityCount());
+        constraint.undo();
+        Assert.assertEquals(1, constraint.possibilityCount());
+        constraint.undo();
+        Assert.assertEquals(2, constraint.possibilityCount());
+        constraint.undo();
+        Assert.assertEquals(4, constraint.possibilityCount());
+    }
+
+    @Test
+    public void testUndoRestoresCells() throws Exception {
+        LazyConstraint constraint = new LazyConstraint(new int[] {2}, new int[] {0, 0, 0, 0, 0});
+        constraint.update(new Line(new int[] {0, 0, 0, 0, 0}));
+        constraint.update(new Line(new int[] {2, 0, 0, 0, 0}));
+        Assert.assertEquals(1, constraint.possibilityCount());
+        constraint.undo();
+        Assert.assertEquals(4, constraint.possibilityCount());
+
+        Line common = new Line(5);
+        Assert.assertTrue(constraint.findCommonCells(common));
+        Assert.assertTrue(common.isBlank());
+
+        constraint.resolve();
+        Set<String> possibilities = new HashSet<>();
+        Line line = new Line(5);
+        constraint.startPossibilities(CandidateOrder.IN_ORDER);
+        while (constraint.hasNextPossibility()) {
+            constraint.nextPossibility(line);
+            Assert.assertTrue(possibilities.add(line.toString()));
+        }
+        Assert.assertEquals(4, possibilities.size());
+    }
+
+    @Test
+    public void testLargeClue() throws Exception {
+        Line cells = new Line(50);
+        LazyConstraint constraint = new LazyConstraint(new int[] {1, 1, 1, 1, 1, 1, 1, 1}, cells);
+        // C(50 - 7, 8) ways to place eight single cells with a gap between each
+        Assert.assertEquals(145008513, constraint.possibilityCount());
+        Line common = new Line(50);
+        Assert.assertTrue(constraint.findCommonCells(common));
+        Assert.assertTrue(common.isBlank());
+    }
+
+    @Test
+    public void testMatchesEnumeration() throws Exception {
+        Random random = new Random(0);
+        for (int test = 0; test < 500; test++) {
+            int length = 1 + random.nextInt(12);
+            int[] clue = this.randomClue(random, length);
+            int[] cells = new int[length];
+            for (int i = 0; i < length; i++) {
+                cells[i] = random.nextInt(4) == 0 ? 1 + random.nextInt(2) : 0;
+            }
+
+            Constraint expected = new Constraint(clue, new int[length]);
+            LazyConstraint actual = new LazyConstraint(clue, new int[length]);
+            expected.update(cells);
+            actual.update(new Line(cells));
+            Assert.assertEquals(expected.possibilityCount(), actual.possibilityCount());
+
+            Line expectedCommon = new Line(length);
+            Line actualCommon = new Line(length);
+            Assert.assertEquals(expected.findCommonCells(expectedCommon), actual.findCommonCells(actualCommon));
+            if (expected.possibilityCount() == 0) {
+                continue;
+            }
+            Assert.assertEquals(expectedCommon.toString(), actualCommon.toString());
+
+            expected.resolve();
+            actual.resolve();
+            Set<String> expectedPossibilities = new HashSet<>();
+            Line line = new Line(length);
+            expected.startPossibilities(CandidateOrder.MOST_LIKELY_FIRST);
+            while (expected.hasNextPossibility()) {
+                expected.nextPossibility(line);
+                Assert.assertTrue(expectedPossibilities.add(line.toString()));
+            }
+            Set<String> actualPossibilities = new HashSet<>();
+            actual.startPossibilities(CandidateOrder.IN_ORDER);
+            while (actual.hasNextPossibility()) {
+                actual.nextPossibility(line);
+                Assert.assertTrue(actualPossibilities.add(line.toString()));
+            }
+            Assert.assertEquals(expectedPossibilities, actualPossibilities);
+            Assert.assertEquals(expected.possibilityCount(), expectedPossibilities.size());
+        }
+    }
+
+    private int[] randomClue(Random random, int length) {
+        int[] clue = new int[length];
+        int size = 0;
+        int remaining = length;
+        while (remaining > 0 && random.nextBoolean()) {
+            int block = 1 + random.nextInt(remaining);
+            clue[size++] = block;
+            remaining -= block + 1;
+        }
+        if (size == 0) {
+            return new int[0];
+        }
+        int[] result = new int[size];
+        System.arraycopy(clue, 0, result, 0, size);
+        return result;
+    }
+}
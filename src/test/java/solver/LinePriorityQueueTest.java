@@ -0,0 +1,39 @@
+package solver;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LinePriorityQueueTest {
+    @Test
+    public void testOrder() throws Exception {
+        // two rows then two columns, with 4, 2, 2 and 3 combinations
+        Constraint[] constraints = {
+                new Constraint(new int[] {2}, new int[] {0, 0, 0, 0, 0}),
+                new Constraint(new int[] {4}, new int[] {0, 0, 0, 0, 0}),
+                new Constraint(new int[] {4}, new int[] {0, 0, 0, 0, 0}),
+                new Constraint(new int[] {3}, new int[] {0, 0, 0, 0, 0}),
+        };
+        LinePriorityQueue queue = new LinePriorityQueue(constraints, 2);
+        Assert.assertEquals(-1, queue.peek());
+        for (int lineId = 0; lineId < constraints.length; lineId++) {
+            queue.add(lineId);
+        }
+        // the column wins the tie
+        Assert.assertEquals(2, queue.peek());
+
+        constraints[0].update(new int[] {2, 0, 0, 0, 0});
+        queue.update(0);
+        Assert.assertEquals(0, queue.peek());
+        constraints[0].undo();
+        queue.update(0);
+        Assert.assertEquals(2, queue.peek());
+
+        queue.remove(2);
+        Assert.assertEquals(1, queue.peek());
+        queue.remove(1);
+        Assert.assertEquals(3, queue.peek());
+        Assert.assertEquals(2, queue.size());
+        queue.add(2);
+        Assert.assertEquals(2, queue.peek());
+    }
+}